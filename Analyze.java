@@ -0,0 +1,178 @@
+// // Copyright 2016 theaigames.com (developers@theaigames.com)
+
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+
+//        http://www.apache.org/licenses/LICENSE-2.0
+
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+//    For the full copyright and license information, please view the LICENSE
+//    file that was distributed with this source code.
+
+package bot;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Analyze class
+ *
+ * Analizez offline multe pozitii, de exemplu toate pozitiile din log-urile
+ * meciurilor. Fiecare linie de intrare are field-ul si macroboard-ul, in
+ * formatul din protocol, separate prin spatiu. Pentru fiecare linie scriu,
+ * in aceeasi ordine, mutarea cea mai buna, scorul pentru player-ul care
+ * muta, adancimea si nodurile:
+ *
+ * place_move x y score s depth d nodes n
+ *
+ * Liniile sunt citite pe masura ce sunt analizate: cel mult cateva pozitii
+ * pentru fiecare thread asteapta in memorie. Fiecare pozitie este analizata
+ * de un Search nou, cu tabela de transpozitii a thread-ului golita.
+ *
+ * java bot.Analyze [-depth d | -nodes n] [-threads t] [-hash mb] [fisier]
+ */
+
+public class Analyze {
+
+	private final int mDepth;
+	private final long mNodes;
+	private final int mHashMb;
+
+	// tabela fiecarui thread; o golesc inainte de fiecare pozitie, ca
+	// rezultatul sa nu depinda de pozitiile analizate inainte pe acel thread
+	private final ThreadLocal<TranspositionTable> mTable;
+
+	public Analyze(int depth, long nodes, int hashMb) {
+		mDepth = depth;
+		mNodes = nodes;
+		mHashMb = hashMb;
+		mTable = ThreadLocal.withInitial(() -> new TranspositionTable(mHashMb));
+	}
+
+	/**
+	 * Citesc pozitiile, le analizez pe threads thread-uri si scriu rezultatele
+	 * in ordinea intrarii. Un thread separat scrie rezultatele, asteptandu-le
+	 * pe rand; coada dintre ele este limitata, ca citirea sa nu o ia inainte.
+	 * O pozitie la care analiza arunca o exceptie primeste o linie de eroare,
+	 * iar celelalte merg mai departe.
+	 */
+	public void run(BufferedReader in, PrintStream out, int threads) throws IOException, InterruptedException {
+		ExecutorService workers = Executors.newFixedThreadPool(threads);
+		BlockingQueue<Future<String>> pending = new ArrayBlockingQueue<Future<String>>(threads * 4);
+		Future<String> end = java.util.concurrent.CompletableFuture.completedFuture(null);
+
+		Thread writer = new Thread(() -> {
+			try {
+				for (Future<String> result = pending.take(); result != end; result = pending.take()) {
+					try {
+						out.println(result.get());
+					} catch (ExecutionException e) {
+						out.println("error " + e.getCause());
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			out.flush();
+		}, "analyze-writer");
+		writer.start();
+
+		try {
+			try {
+				for (String line = in.readLine(); line != null; line = in.readLine()) {
+					String position = line.trim();
+					if (position.isEmpty())
+						continue;
+					pending.put(workers.submit(() -> analyze(position)));
+				}
+			} finally {
+				pending.put(end);
+				writer.join();
+			}
+		} finally {
+			workers.shutdown();
+		}
+	}
+
+	private String analyze(String position) {
+		String[] parts = position.split("\\s+");
+		if (parts.length < 2)
+			return "error expected field and macroboard";
+
+		Field field = new Field();
+		try {
+			field.parseFromBytes(parts[0].getBytes(), 0, parts[0].length());
+			field.parseMacroboardFromBytes(parts[1].getBytes(), 0, parts[1].length());
+		} catch (RuntimeException e) {
+			return "error " + e;
+		}
+		if (!field.hasAvailableMoves())
+			return "error no moves";
+
+		int player = sideToMove(field);
+		TranspositionTable table = mTable.get();
+		table.clear();
+		Search search = new Search(table, 0);
+		if (mNodes > 0)
+			search.runNodes(field, player, player, mNodes);
+		else
+			search.runFixedDepth(field, player, player, mDepth);
+
+		int cell = search.getCompletedCell();
+		return "place_move " + Field.cellX(cell) + " " + Field.cellY(cell) + " score " + search.getCompletedScore()
+				+ " depth " + search.getCompletedDepth() + " nodes " + search.getNodes();
+	}
+
+	/**
+	 * Player 1 incepe, deci muta cand are acelasi numar de celule ca player 2.
+	 */
+	private static int sideToMove(Field field) {
+		int first = 0, second = 0;
+		for (int board = 0; board < 9; board++) {
+			first += Integer.bitCount(field.getBoardMask(1, board));
+			second += Integer.bitCount(field.getBoardMask(2, board));
+		}
+		return first == second ? 1 : 2;
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int depth = 10, hashMb = 16;
+		long nodes = 0;
+		int threads = Runtime.getRuntime().availableProcessors();
+		String file = null;
+
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-depth"))
+				depth = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-nodes"))
+				nodes = Long.parseLong(args[++i]);
+			else if (args[i].equals("-threads"))
+				threads = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-hash"))
+				hashMb = Integer.parseInt(args[++i]);
+			else
+				file = args[i];
+		}
+
+		try (BufferedReader in = new BufferedReader(
+				file == null ? new InputStreamReader(System.in) : new FileReader(file))) {
+			PrintStream out = new PrintStream(new java.io.BufferedOutputStream(System.out), false);
+			new Analyze(depth, nodes, hashMb).run(in, out, threads);
+		}
+	}
+}
@@ -17,7 +17,14 @@
 
 package bot;
 
-import java.util.Scanner;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * BotParser class
@@ -25,47 +32,137 @@ import java.util.Scanner;
  * Main class that will keep reading output from the engine. Will either update
  * the bot state or get actions.
  * 
+ * Comenzile sunt citite si raspunsurile scrise direct ca octeti, prin
+ * ProtocolReader si ProtocolWriter, fara String-uri intermediare.
+ * 
+ * Cautarea ruleaza pe un thread separat de cel care citeste comenzile, ca
+ * bot-ul sa poata pondera dupa ce raspunde si sa se opreasca imediat ce
+ * vine urmatoarea comanda.
+ * 
  * @author Jim van Eeden <jim@starapple.nl>
  */
 
 public class BotParser {
 
-	final Scanner scan;
+	private static final byte[] SETTINGS = ProtocolReader.bytes("settings");
+	private static final byte[] YOUR_BOTID = ProtocolReader.bytes("your_botid");
+	private static final byte[] TIMEBANK = ProtocolReader.bytes("timebank");
+	private static final byte[] TIME_PER_MOVE = ProtocolReader.bytes("time_per_move");
+	private static final byte[] UPDATE = ProtocolReader.bytes("update");
+	private static final byte[] GAME = ProtocolReader.bytes("game");
+	private static final byte[] ROUND = ProtocolReader.bytes("round");
+	private static final byte[] MOVE = ProtocolReader.bytes("move");
+	private static final byte[] FIELD = ProtocolReader.bytes("field");
+	private static final byte[] MACROBOARD = ProtocolReader.bytes("macroboard");
+	private static final byte[] ACTION = ProtocolReader.bytes("action");
+	private static final byte[] UNKNOWN_COMMAND = ProtocolReader.bytes("unknown command");
+
+	final ProtocolReader reader;
+	final ProtocolWriter writer;
 	final BotStarter bot;
 
 	private Field mField;
-	public static int mBotId = 0;
+
+	// thread-ul pe care ruleaza cautarea si ponderarea in curs
+	private final ExecutorService mEngine;
+	private Future<?> mPonder;
 
 	public BotParser(BotStarter bot) {
-		this.scan = new Scanner(System.in);
+		this(bot, System.in, System.out, runnable -> {
+			Thread thread = new Thread(runnable, "engine");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Un parser pentru un meci oarecare, de exemplu o conexiune din Server.
+	 *
+	 * @param engineThreads
+	 *            - creeaza thread-ul pe care ruleaza cautarea
+	 */
+	public BotParser(BotStarter bot, InputStream in, OutputStream out, ThreadFactory engineThreads) {
+		this.reader = new ProtocolReader(in);
+		this.writer = new ProtocolWriter(out);
 		this.bot = bot;
+		mEngine = Executors.newSingleThreadExecutor(engineThreads);
+	}
+
+	public void run() throws IOException {
+		try {
+			parse();
+		} finally {
+			this.bot.stopPondering();
+			mEngine.shutdownNow();
+		}
 	}
 
-	public void run() {
+	private void parse() throws IOException {
 		mField = new Field();
-		while (scan.hasNextLine()) {
-			String line = scan.nextLine();
+		while (reader.nextLine()) {
 
-			if (line.length() == 0) {
+			if (!reader.nextToken()) {
 				continue;
 			}
 
-			String[] parts = line.split(" ");
-			if (parts[0].equals("settings")) {
-				if (parts[1].equals("your_botid")) {
-					mBotId = Integer.parseInt(parts[2]);
+			// oponentul a mutat; opresc ponderarea inainte sa modific mField
+			if (mPonder != null) {
+				this.bot.stopPondering();
+				await(mPonder);
+				mPonder = null;
+			}
+
+			if (reader.tokenIs(SETTINGS)) {
+				if (!reader.nextToken()) {
+					continue;
+				}
+				if (reader.tokenIs(YOUR_BOTID) && reader.nextToken()) {
+					this.bot.setBotId(reader.tokenInt());
+				} else if (reader.tokenIs(TIMEBANK) && reader.nextToken()) {
+					this.bot.getTimeManager().setTimebank(reader.tokenInt());
+				} else if (reader.tokenIs(TIME_PER_MOVE) && reader.nextToken()) {
+					this.bot.getTimeManager().setTimePerMove(reader.tokenInt());
 				}
-			} else if (parts[0].equals("update")
-					&& parts[1].equals("game")) { /* new game data */
-				mField.parseGameData(parts[2], parts[3]);
-			} else if (parts[0].equals("action")) {
-				if (parts[1].equals("move")) { /* move requested */
-					Move move = this.bot.makeTurn(mField);
-					System.out.println("place_move " + move.getX() + " " + move.getY());
+			} else if (reader.tokenIs(UPDATE) && reader.nextToken()
+					&& reader.tokenIs(GAME)) { /* new game data */
+				if (!reader.nextToken()) {
+					continue;
+				}
+				if (reader.tokenIs(ROUND) && reader.nextToken()) {
+					mField.setRoundNr(reader.tokenInt());
+				} else if (reader.tokenIs(MOVE) && reader.nextToken()) {
+					mField.setMoveNr(reader.tokenInt());
+				} else if (reader.tokenIs(FIELD) && reader.nextToken()) {
+					mField.parseFromBytes(reader.buffer(), reader.tokenStart(), reader.tokenEnd());
+				} else if (reader.tokenIs(MACROBOARD) && reader.nextToken()) {
+					mField.parseMacroboardFromBytes(reader.buffer(), reader.tokenStart(), reader.tokenEnd());
+				}
+			} else if (reader.tokenIs(ACTION)) {
+				if (reader.nextToken() && reader.tokenIs(MOVE)) { /* move requested */
+					int timeLeft = reader.nextToken() ? reader.tokenInt()
+							: this.bot.getTimeManager().getTimebank();
+					Move move = await(mEngine.submit(() -> this.bot.makeTurn(mField, timeLeft)));
+					writer.writeMove(move.getX(), move.getY());
+
+					if (this.bot.isPonderEnabled()) {
+						this.bot.startPondering();
+						mPonder = mEngine.submit(() -> this.bot.ponder(mField, move));
+					}
 				}
 			} else {
-				System.out.println("unknown command");
+				writer.writeLine(UNKNOWN_COMMAND);
 			}
 		}
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Astept rezultatul unei cautari de pe thread-ul motorului.
+	 */
+	private <T> T await(Future<T> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException | ExecutionException e) {
+			throw new RuntimeException(e);
+		}
+	}
+}
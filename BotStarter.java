@@ -17,7 +17,14 @@
 
 package bot;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * BotStarter class
@@ -29,421 +36,517 @@ import java.util.ArrayList;
  */
 
 public class BotStarter {
-	private int lx, hx, ly, hy;
-	private final int maxScore = 123456789;
-	private final int minScore = -123456789;
 
-	private int winMicroScore = 7;
-	private int MacroBoardWeight = 23;
+	// id-ul bot-ului in meciul curent, primit la "settings your_botid"
+	private int mBotId;
 
-	// declar o matrice cu 3 dimensiuni, in care retin secventele posibile castigatoare
-	private int[][][] posibleWinSeq = new int[][][] { { { 0, 0 }, { 0, 1 }, { 0, 2 } },
-			{ { 1, 0 }, { 1, 1 }, { 1, 2 } }, { { 2, 0 }, { 2, 1 }, { 2, 2 } }, { { 0, 0 }, { 1, 0 }, { 2, 0 } },
-			{ { 0, 1 }, { 1, 1 }, { 2, 1 } }, { { 0, 2 }, { 1, 2 }, { 2, 2 } }, { { 0, 0 }, { 1, 1 }, { 2, 2 } },
-			{ { 0, 2 }, { 1, 1 }, { 2, 0 } } };
+	// controlul timpului pentru iterative deepening
+	private final TimeManager mTimeManager = new TimeManager();
 
-	// limitele(lowX, lowY) din mBoard pentru fiecare patrat
-	private int[][] miniBoardsBounds = new int[][] { { 0, 0 }, { 3, 0 }, { 6, 0 }, { 0, 3 }, { 3, 3 }, { 6, 3 },
-			{ 0, 6 }, { 3, 6 }, { 6, 6 } };
+	// tabela de transpozitii, pastrata de la o tura la alta si comuna
+	// tuturor thread-urilor
+	private final TranspositionTable mTable;
 
-	// cat de importante sunt acele patrate(blocuri)
-	private int[] weights = new int[] { 3, 2, 3, 2, 4, 2, 3, 2, 3 };
-	private int[][] matrixWeights = new int[][] { {3, 2, 3}, {2, 4, 2}, {3, 2, 3 } };
+	// mSearches[0] ruleaza pe thread-ul curent, restul pe helperi
+	private final Search[] mSearches;
+	private final ExecutorService mHelpers;
 
-	/**
-	 * Functie de evaluare a mutarii.
-	 * @return scorul evaluarii.
-	 */
-	private int evaluate(Field field, int player) {
+	// MCTS in loc de minimax, cate un arbore pentru fiecare thread
+	private Mcts[] mTrees;
 
-		// calculez scorul pentru MacroBoard
-		// il inmultesc cu un weight, deoarece este mai important MacroBoard ca un MiniBoard
-		int value = calculateMacroBoardScore(field, player) * MacroBoardWeight;
+	// telemetria; mEvent este evenimentul mutarii in curs
+	private Telemetry mTelemetry = new Telemetry(null);
+	private SearchEvent mEvent;
 
-		int lowX, lowY;
+	// cartea de deschideri, daca exista
+	private OpeningBook mBook;
 
-		// calculez pentru fiecare patrat scorul
-		for (int i = 0; i < 9; i++) {
+	// ponderile evaluarii, daca nu sunt cele implicite
+	private Weights mWeights;
 
-			lowX = miniBoardsBounds[i][0];
-			lowY = miniBoardsBounds[i][1];
+	// solver-ul exact, folosit cand raman cel mult mSolverThreshold celule
+	// libere in patratele neterminate; 0 il dezactiveaza
+	private final Solver mSolver;
+	private int mSolverThreshold = 24;
 
-			// daca nu este un patrat terminat
-			if (field.getmMacroboard()[lowX / 3][lowY / 3] == 0 || field.getmMacroboard()[lowX / 3][lowY / 3] == -1) {
+	// dupa ce solver-ul renunta sau dovedeste o infrangere, il incerc din nou
+	// doar cand au mai disparut SOLVER_RETRY celule libere, ca restul turelor
+	// sa aiba tot timpul pentru cautare; mSolverLive este numarul de la ultima
+	// tura, ca sa recunosc un joc nou
+	private static final int SOLVER_RETRY = 6;
+	private int mSolverRetry = Integer.MAX_VALUE, mSolverLive = Integer.MAX_VALUE;
 
-				// la acel scor adun scorul pentru fiecare miniBoard
-				// pe care il inmultesc cu valoarea respectiva asociata patratului
-				value += calculateBoardScore(field, lowX, lowY, player) * weights[i];
-			}
-		}
+	// ponderarea in timpul turei oponentului
+	private boolean mPonderEnabled;
+	private volatile boolean mPondering;
+	private final Field mPonderField = new Field();
 
-		return value;
+	public BotStarter() {
+		this(32, 1);
 	}
 
 	/**
-	 * Calculez scorul fiecarui miniBoard.
+	 * @param hashSizeMb
+	 *            - dimensiunea tabelei de transpozitii, in MB
+	 * @param threads
+	 *            - cate thread-uri cauta in paralel
 	 */
-	private int calculateBoardScore(Field field, int lowX, int lowY, int player) {
-
-		int playerScore = 0, opponentScore = 0;
-		int playerBlocks = 0, opponentBlocks = 0;
-		boolean fullSquare;
-
-		// pentru fiecare secventa castigatoare dintr-un patrat
-		for (int[][] seq : posibleWinSeq) {
-			fullSquare = false;
-			playerBlocks = 0;
-			opponentBlocks = 0;
-
-			// calculez cate blocuri am eu si cate are oponentul
-			for (int[] index : seq) {
+	public BotStarter(int hashSizeMb, int threads) {
+		mTable = new TranspositionTable(hashSizeMb);
+		mSolver = new Solver(Math.max(1, hashSizeMb / 2));
+		mSearches = new Search[Math.max(1, threads)];
+		for (int i = 0; i < mSearches.length; i++) {
+			mSearches[i] = new Search(mTable, i);
+		}
 
-				if (field.getmBoard()[lowX + index[0]][lowY + index[1]] == player)
-					playerBlocks++;
-				else if (field.getmBoard()[lowX + index[0]][lowY + index[1]] == player % 2 + 1)
-					opponentBlocks++;
-				else if (field.getmBoard()[lowX + index[0]][lowY + index[1]] == -2)
-					fullSquare = true;
+		if (mSearches.length > 1) {
+			mHelpers = Executors.newFixedThreadPool(mSearches.length - 1, runnable -> {
+				Thread thread = new Thread(runnable, "search-helper");
+				thread.setDaemon(true);
+				return thread;
+			});
+		} else {
+			mHelpers = null;
+		}
+	}
 
-			}
+	/**
+	 * Caut mutarea cea mai buna in timpul dat.
+	 */
+	private Move search(Field field, int timeLeft) {
+		mTimeManager.start(timeLeft, field.getEmptyCells());
+		if (Telemetry.ENABLED && mEvent != null)
+			mEvent.timeBudget = mTimeManager.getBudgetMillis();
+		mTable.newSearch();
+
+		int[] moves = new int[81];
+		int count = field.generateMoves(moves);
+
+		// daca am o singura mutare nu mai caut
+		if (count == 1) {
+			describe("forced", 0, 0, 0);
+			int cell = Move.cell(moves[0]);
+			return new Move(Field.cellX(cell), Field.cellY(cell));
+		}
 
-			// daca o secventa contine un bloc al meu, adun 1
-			// daca o secventa contine doua blocuri identice, adun 1 + un scor
-			// daca intr-o secventa se gasesc blocuri diferite
-			// atunci nu mai poate fi o secventa castigatoare
-			if (!fullSquare) {
-				if (playerBlocks > 0) {
-					if (opponentBlocks > 0)
-						continue;
-					if (playerBlocks == 2)
-						playerScore += winMicroScore;
-					playerScore += 1;
-				} else if (opponentBlocks > 0) {
-					if (opponentBlocks == 2)
-						opponentScore += winMicroScore;
-					opponentScore += 1;
+		// in final incerc intai sa rezolv pozitia exact, in jumatate din timp;
+		// daca nu reusesc, caut normal in timpul ramas. Intr-o pozitie
+		// pierduta tot caut normal: evaluarea alege mutarile care ii lasa
+		// oponentului mai multe ocazii sa greseasca. In ambele cazuri las
+		// solver-ul deoparte pana cand pozitia se micsoreaza
+		int live = Solver.liveCells(field);
+		if (live > mSolverLive)
+			mSolverRetry = Integer.MAX_VALUE;
+		mSolverLive = live;
+		if (live <= mSolverThreshold && live < mSolverRetry) {
+			long now = System.nanoTime();
+			if (mSolver.solve(field, mBotId, now + (mTimeManager.getSoftLimit() - now) / 2)) {
+				int score = mSolver.getScore();
+				if (Telemetry.ENABLED) {
+					System.err.println("solved " + (score > 0 ? "win" : score < 0 ? "loss" : "draw") + " in "
+							+ mSolver.getDistance() + " nodes " + mSolver.getNodes() + " time "
+							+ mTimeManager.getElapsedMillis());
+				}
+				if (score >= 0) {
+					describe("solver", mSolver.getNodes(), mSolver.getDistance(), score);
+					int cell = mSolver.getBestCell();
+					return new Move(Field.cellX(cell), Field.cellY(cell));
 				}
+				mSolverRetry = live - SOLVER_RETRY;
+			} else {
+				if (Telemetry.ENABLED)
+					System.err.println("solver gave up after " + mSolver.getNodes() + " nodes");
+				mSolverRetry = live - SOLVER_RETRY;
 			}
 		}
 
-		int value = 0;
-		// de asemenea, calculez cat de "valoros" este patratul
-		// facand referire la weights
-		int x = 0, y = 0;
-		for (int i = lowX; i < lowX + 3; i++) {
-			y = 0;
-			for (int j = lowY; j < lowY + 3; j++) {
-				if (field.getmBoard()[i][j] == player) {
-					value += matrixWeights[x][y];
-				} else if (field.getmBoard()[i][j] == player % 2 + 1) {
-					value -= matrixWeights[x][y];
-				}
-				y++;
+		for (Search search : mSearches) {
+			search.clearStop();
+		}
+		Search best = runSearches(field, mBotId, false);
+
+		if (Telemetry.ENABLED && mEvent != null) {
+			long nodes = 0, probes = 0, hits = 0;
+			for (Search search : mSearches) {
+				nodes += search.getNodes();
+				probes += search.getTableProbes();
+				hits += search.getTableHits();
 			}
-			x++;
+			describe("minimax", nodes, best.getCompletedDepth(), best.getCompletedScore());
+			Search main = mSearches[0];
+			mEvent.firstMoveCutoffs = main.getCutoffs() == 0 ? 0
+					: (double) main.getFirstMoveCutoffs() / main.getCutoffs();
+			mEvent.tableHitRate = probes == 0 ? 0 : (double) hits / probes;
 		}
 
-		// adun valoarea de mai sus cu diferenta dintre scorul meu si scorul oponentului
-		return playerScore - opponentScore + value;
+		int cell = best.getCompletedCell();
+		return new Move(Field.cellX(cell), Field.cellY(cell));
 	}
-	
+
 	/**
-	 * Calculez scorul asociat lui macroBoard. Valoarea returnata va fi inmultita mai sus
-	 * cu o alta valoare, deoarece un patrat din macroBoard este mai important ca unul 
-	 * din miniBoard.
+	 * Caut mutarea cu MCTS, cu cate un arbore pe fiecare thread, si aleg
+	 * mutarea cu cele mai multe vizite adunate din toti arborii.
 	 */
-	private int calculateMacroBoardScore(Field field, int player) {
+	private Move searchMcts(Field field, int timeLeft) {
+		mTimeManager.start(timeLeft, field.getEmptyCells());
+		if (Telemetry.ENABLED && mEvent != null)
+			mEvent.timeBudget = mTimeManager.getBudgetMillis();
+		long deadline = mTimeManager.getSoftLimit();
+		int player = mBotId;
+
+		for (Mcts tree : mTrees) {
+			tree.clearStop();
+		}
 
-		int playerScore = 0, opponentScore = 0;
-		int playerBlocks = 0, opponentBlocks = 0;
-		boolean fullSquare;
+		List<Future<?>> running = new ArrayList<Future<?>>();
+		for (int i = 1; i < mTrees.length; i++) {
+			Mcts tree = mTrees[i];
+			running.add(mHelpers.submit(() -> tree.run(field, player, deadline)));
+		}
 
-		// pentru fiecare secventa castigatoare din patrat
-		for (int[][] seq : posibleWinSeq) {
-			fullSquare = false;
-			playerBlocks = 0;
-			opponentBlocks = 0;
+		mTrees[0].run(field, player, deadline);
 
-			// calculez cate blocuri am eu si cate are oponentul
-			for (int[] index : seq) {
+		for (int i = 1; i < mTrees.length; i++) {
+			mTrees[i].stop();
+		}
+		for (Future<?> future : running) {
+			try {
+				future.get();
+			} catch (InterruptedException | ExecutionException e) {
+				e.printStackTrace();
+			}
+		}
 
-				if (field.getmMacroboard()[index[0]][index[1]] == player)
-					playerBlocks++;
-				else if (field.getmMacroboard()[index[0]][index[1]] == player % 2 + 1)
-					opponentBlocks++;
-				else if (field.getmMacroboard()[index[0]][index[1]] == -2)
-					fullSquare = true;
+		int[] visits = new int[81];
+		long iterations = 0;
+		for (Mcts tree : mTrees) {
+			tree.addRootVisits(visits);
+			iterations += tree.getIterations();
+		}
 
-			}
+		int cell = -1;
+		for (int i = 0; i < 81; i++) {
+			if (visits[i] > 0 && (cell < 0 || visits[i] > visits[cell]))
+				cell = i;
+		}
 
-			// daca o secventa contine un bloc al meu, adun 1
-			// daca o secventa contine doua blocuri identice, adun 1 + un scor
-			// daca intr-o secventa se gasesc blocuri diferite
-			// atunci nu mai poate fi o secventa castigatoare
-			if (!fullSquare) {
-				if (playerBlocks > 0) {
-					if (opponentBlocks > 0)
-						continue;
-					if (playerBlocks == 2)
-						playerScore += winMicroScore;
-					playerScore += 1;
-				} else if (opponentBlocks > 0) {
-					if (opponentBlocks == 2)
-						opponentScore += winMicroScore;
-					opponentScore += 1;
-				}
-			}
+		// daca nicio iteratie nu s-a terminat, joc prima mutare legala, ca
+		// minimax-ul oprit inainte de prima iteratie
+		if (cell < 0) {
+			int[] moves = new int[81];
+			field.generateMoves(moves);
+			cell = Move.cell(moves[0]);
+			describe("mcts", iterations, 0, 0);
+			return new Move(Field.cellX(cell), Field.cellY(cell));
 		}
 
-		int value = 0;
-		
-		// de asemenea, calculez "valoarea" patratului
-		// am mai mult ca preferinta castigarea colturilor si a centrului 
-		for (int i = 0; i < 3; i++) {
-			for (int j = 0; j < 3; j++) {
-				if (field.getmMacroboard()[i][j] == player) {
-					value += matrixWeights[i][j];
-				} else if (field.getmMacroboard()[i][j] == player % 2 + 1) {
-					value -= matrixWeights[i][j];
-				}
-			}
+		if (Telemetry.ENABLED) {
+			System.err.println("mcts iterations " + iterations + " visits " + visits[cell] + " win rate "
+					+ mTrees[0].getWinRate(cell) + "% time " + mTimeManager.getElapsedMillis());
 		}
+		describe("mcts", iterations, 0, mTrees[0].getWinRate(cell));
 
-		// adun valoarea de mai sus cu diferenta dintre scorul meu si
-		// scorul oponentului
-		return playerScore - opponentScore + value;
+		return new Move(Field.cellX(cell), Field.cellY(cell));
 	}
 
-	
-	/*
-	 * Setez un patrat ca fiind terminat in MacroBoard, in urma unei mutari,
-	 * daca este cazul sa fie castigat de oricare din playeri sau terminat.
+	/**
+	 * Pornesc helperii pe aceeasi pozitie, caut pe thread-ul curent si cand
+	 * termin ii opresc. Aleg rezultatul celei mai adanci iteratii terminate;
+	 * la egalitate, pe cel al thread-ului principal.
 	 */
-	private void setMicroWins(Field field) {
-
-		// verific daca e castigator patratul(sau terminat in urma unui egal)
-		int score_id = field.checkForVictory(lx, hx, ly, hy);
-
-		// daca eu castig
-		if (score_id == BotParser.mBotId) {
-
-			// cand mutarea trimite catre acelasi patrat care devine castigat
-			// atunci toate valorile cu 0 din MacroBoard devin -1
-			if (field.getPlayerIdFromMacro(lx / 3, ly / 3) == -1) {
-				field.clearMacroBoardWhenSentToAWonSquare();
-			}
-
-			field.setWinnerMicroSquare(lx / 3, ly / 3, score_id);
-			// daca oponentul castiga
-		} else if (score_id == BotParser.mBotId % 2 + 1) {
-
-			if (field.getPlayerIdFromMacro(lx / 3, ly / 3) == -1) {
-				field.clearMacroBoardWhenSentToAWonSquare();
-			}
+	private Search runSearches(Field field, int player, boolean ponder) {
+		List<Future<?>> running = new ArrayList<Future<?>>();
+		for (int i = 1; i < mSearches.length; i++) {
+			Search helper = mSearches[i];
+			running.add(mHelpers.submit(() -> helper.run(field, player, mBotId, mTimeManager, ponder)));
+		}
 
-			field.setWinnerMicroSquare(lx / 3, ly / 3, score_id);
-			// daca este egal
-		} else if (score_id == -1) {
+		mSearches[0].run(field, player, mBotId, mTimeManager, ponder);
 
-			if (field.getPlayerIdFromMacro(lx / 3, ly / 3) == -1) {
-				field.clearMacroBoardWhenSentToAWonSquare();
+		for (int i = 1; i < mSearches.length; i++) {
+			mSearches[i].stop();
+		}
+		for (Future<?> future : running) {
+			try {
+				future.get();
+			} catch (InterruptedException | ExecutionException e) {
+				e.printStackTrace();
 			}
-
-			// -2 sta pentru egal in simularea mea; pe platforma este tot 0
-			field.setWinnerMicroSquare(lx / 3, ly / 3, -2);
-
 		}
 
+		Search best = mSearches[0];
+		for (Search helper : mSearches) {
+			if (helper.getCompletedDepth() > best.getCompletedDepth())
+				best = helper;
+		}
+		return best;
 	}
 
-	private Move minimax(Field field, int player, int depth, int alpha, int beta) {
-
-		// setez un patrat ca fiind terminat in MacroBoard, in urma unei mutari
-		// daca este cazul sa fie castigat de oricare din playeri sau terminat
-		setMicroWins(field);
-
-		// Verific daca este victorie, infrangere sau egal in MacroBoard
-		int macroScore = field.checkmMacroBoardForVictory();
-
-		// daca eu castig
-		if (macroScore == BotParser.mBotId) {
+	/**
+	 * Ponderez cat timp oponentul se gandeste: aplic mutarea mea si caut
+	 * toate raspunsurile lui, pana cand sunt oprit de stopPondering. Nu
+	 * returnez nimic; rezultatul ramane in tabela de transpozitii, de unde il
+	 * foloseste cautarea din tura urmatoare.
+	 *
+	 * Este apelat pe thread-ul motorului, dupa startPondering.
+	 */
+	public void ponder(Field field, Move move) {
+		mPonderField.copyFrom(field);
+		mPonderField.setMove(move.getX(), move.getY(), mBotId);
+		if (mTrees != null || !mPonderField.hasAvailableMoves())
+			return;
+
+		// sterg oprirea si abia apoi verific daca am fost deja oprit, ca un
+		// stopPondering venit intre timp sa nu se piarda
+		for (Search search : mSearches) {
+			search.clearStop();
+		}
+		if (!mPondering)
+			return;
 
-			Move move = new Move();
-			move.setScore(maxScore + depth);
-			return move;
+		mTable.newSearch();
+		Search best = runSearches(mPonderField, mBotId % 2 + 1, true);
+		if (Telemetry.ENABLED)
+			System.err.println("ponder depth " + best.getCompletedDepth() + " nodes " + best.getNodes());
+	}
 
-		// daca oponentul castiga
-		} else if (macroScore == BotParser.mBotId % 2 + 1) {
+	/**
+	 * Apelat de thread-ul care citeste comenzile, inainte de ponder.
+	 */
+	public void startPondering() {
+		mPondering = true;
+	}
 
-			Move move = new Move();
-			move.setScore(minScore - depth);
-			return move;
+	/**
+	 * Opresc ponderarea; apelat de thread-ul care citeste comenzile cand
+	 * vine o comanda noua de la engine.
+	 */
+	public void stopPondering() {
+		mPondering = false;
+		for (Search search : mSearches) {
+			search.stop();
+		}
+	}
 
-		// daca este egal
-		} else if (macroScore == -3) {
+	public boolean isPonderEnabled() {
+		return mPonderEnabled;
+	}
 
-			Move move = new Move();
-			move.setScore(0);
-			return move;
+	public void setPonderEnabled(boolean ponderEnabled) {
+		mPonderEnabled = ponderEnabled;
+	}
 
-		// daca nu este niciuna de mai sus si am ajuns la final
-		} else if (depth == 0) {
+	/**
+	 * Makes a turn. Alege mutarea folosind timpul ramas in time bank.
+	 *
+	 * @param timeLeft
+	 *            - timpul ramas, primit la "action move"
+	 * @return The column where the turn was made.
+	 */
+	public Move makeTurn(Field field, int timeLeft) {
+		if (!Telemetry.ENABLED)
+			return chooseMove(field, timeLeft);
+
+		long start = System.nanoTime();
+		SearchEvent event = new SearchEvent();
+		event.begin();
+		mEvent = event;
+		Move move = chooseMove(field, timeLeft);
+		mEvent = null;
+
+		event.move = 82 - field.getEmptyCells();
+		event.timeUsed = (System.nanoTime() - start) / 1000000L;
+		event.nodesPerSecond = event.nodes * 1000 / Math.max(1, event.timeUsed);
+		event.end();
+		mTelemetry.record(event);
+		return move;
+	}
 
-			if (player == BotParser.mBotId) {
-				Move move = new Move();
-				move.setScore(evaluate(field, player));
-				return move;
-			} else if (player == BotParser.mBotId % 2 + 1) {
-				Move move = new Move();
-				move.setScore(-evaluate(field, player));
+	private Move chooseMove(Field field, int timeLeft) {
+		if (mWeights != null)
+			field.setWeights(mWeights);
+
+		// mutarile din carte nu consuma din time bank
+		if (mBook != null) {
+			Move move = mBook.probe(field);
+			if (move != null) {
+				if (Telemetry.ENABLED)
+					System.err.println("book move " + move.getX() + " " + move.getY() + " score " + move.getScore());
+				describe("book", 0, 0, move.getScore());
 				return move;
 			}
-
 		}
 
-		Move bestMove = new Move();
+		// prima mutare
+		if (field.isEmpty()) {
+			describe("first", 0, 0, 0);
+			return new Move(4, 4);
+		}
 
-		for (Move move : field.getAvailableMoves()) {
+		if (mTrees != null) {
+			return searchMcts(field, timeLeft);
+		}
 
-			// determin limitele patratului in care se afla mutarea
-			boundaries(move);
+		// returnez cea mai buna mutare gasita
+		return search(field, timeLeft);
+	}
 
-			// setez mutarea in mBoard
-			field.setMove(move.mX, move.mY, player);
+	/**
+	 * Completez evenimentul de telemetrie al mutarii curente.
+	 */
+	private void describe(String engine, long nodes, int depth, int score) {
+		if (Telemetry.ENABLED && mEvent != null) {
+			mEvent.engine = engine;
+			mEvent.nodes = nodes;
+			mEvent.depth = depth;
+			mEvent.score = score;
+			if (depth > 0 && nodes > 1)
+				mEvent.branchingFactor = Math.pow(nodes, 1.0 / depth);
+		}
+	}
 
-			// daca este randul meu
-			if (player == BotParser.mBotId) {
+	/**
+	 * Folosesc MCTS in loc de minimax.
+	 *
+	 * @param nodes
+	 *            - cate noduri are arborele fiecarui thread
+	 */
+	public void useMcts(int nodes) {
+		mTrees = new Mcts[mSearches.length];
+		for (int i = 0; i < mTrees.length; i++) {
+			mTrees[i] = new Mcts(nodes, System.nanoTime() + i);
+		}
+	}
 
-				// calculez scorul mutarii, apeland recursiv pe min
-				move.score = minimax(field, (player % 2) + 1, depth - 1, alpha, beta).score;
+	/**
+	 * @param threshold
+	 *            - numarul maxim de celule libere din patratele neterminate
+	 *            pentru care incerc solver-ul; 0 il dezactiveaza
+	 */
+	public void setSolverThreshold(int threshold) {
+		mSolverThreshold = threshold;
+	}
 
-				// daca scorul este mai mare ca alpha, actualizez alpha
-				// setez cea mai buna mutare pana acum, bestMove, in cazul lui
-				// max
-				if (move.score > alpha) {
+	/**
+	 * Cum cauta minimax-ul fiecare iteratie (Search.ALPHA_BETA, PVS,
+	 * ASPIRATION sau MTDF).
+	 */
+	public void setSearchMode(int mode) {
+		for (Search search : mSearches) {
+			search.setMode(mode);
+		}
+	}
 
-					alpha = move.score;
-					bestMove = move;
-				}
-			// daca este randul lui
-			} else if (player == BotParser.mBotId % 2 + 1) {
-
-				// // calculez scorul mutarii, apeland recursiv pe max
-				move.score = minimax(field, (player % 2) + 1, depth - 1, alpha, beta).score;
-
-				// daca scorul este mai mic ca beta, actualizez beta
-				// setez cea mai buna mutare pana acum, bestMove, in cazul lui
-				// min
-				if (move.score < beta) {
-					beta = move.score;
-					bestMove = move;
-				}
+	/**
+	 * Extensiile si cautarea de linistire ale minimax-ului (vezi
+	 * Search.setSelectivity).
+	 */
+	public void setSelectivity(int maxExtensions, int quiescenceDepth) {
+		for (Search search : mSearches) {
+			search.setSelectivity(maxExtensions, quiescenceDepth);
+		}
+	}
 
-			}
+	/**
+	 * Reducerile si futility pruning-ul minimax-ului (vezi
+	 * Search.setPruning).
+	 */
+	public void setPruning(int lmrMoves, int futilityMargin) {
+		for (Search search : mSearches) {
+			search.setPruning(lmrMoves, futilityMargin);
+		}
+	}
 
-			// fac unMove la mutare
-			field.unMove(move.mX, move.mY, 0);
+	public void setTelemetry(Telemetry telemetry) {
+		mTelemetry = telemetry;
+	}
 
-			// intrerup cautarea, deoarece nu mai are cum sa influenteze
-			// rezultatul
-			if (alpha >= beta) {
-				break;
-			}
-		}
+	public void setBook(OpeningBook book) {
+		mBook = book;
+	}
 
-		// returnez alpha si mutarea cea mai buna, daca sunt eu
-		// respectiv beta si mutarea cea mai buna, daca este oponentul
-		if (player == BotParser.mBotId) {
-			bestMove.score = alpha;
-		} else {
-			bestMove.score = beta;
-		}
+	/**
+	 * Ponderile evaluarii (de exemplu de la Tune); null pentru cele
+	 * implicite.
+	 */
+	public void setWeights(Weights weights) {
+		mWeights = weights;
+	}
 
-		return bestMove;
+	public TimeManager getTimeManager() {
+		return mTimeManager;
+	}
 
+	public void setBotId(int botId) {
+		mBotId = botId;
 	}
 
-	private void checkX(Move move) {
-		if (move.mX < 3) {
-			lx = 0;
-			hx = 3;
-		} else if (move.mX >= 3 && move.mX < 6) {
-			lx = 3;
-			hx = 6;
-		} else if (move.mX >= 6 && move.mX < 9) {
-			lx = 6;
-			hx = 9;
-		}
+	public int getBotId() {
+		return mBotId;
 	}
 
 	/**
-	 * Determin in care patrat din mBoard se afla mutarea.
-	 * 
-	 * @param move
-	 *            - mutarea respectiva.
+	 * Opresc thread-urile helper, la sfarsitul meciului.
 	 */
-	private void boundaries(Move move) {
-		if (move.mY < 3) {
-			ly = 0;
-			hy = 3;
-			checkX(move);
-		} else if (move.mY >= 3 && move.mY < 6) {
-			ly = 3;
-			hy = 6;
-			checkX(move);
-		} else if (move.mY >= 6 && move.mY < 9) {
-			ly = 6;
-			hy = 9;
-			checkX(move);
-		}
+	public void shutdown() {
+		if (mHelpers != null)
+			mHelpers.shutdownNow();
 	}
 
 	/**
-	 * Makes a turn. Edit this method to make your bot smarter. Currently does
-	 * only random moves.
+	 * Creez un bot configurat din proprietatile sistemului (bot.hash,
+	 * bot.threads, bot.ponder, bot.engine, bot.mctsNodes, bot.solver,
+	 * bot.search, bot.extensions, bot.quiescence, bot.lmr, bot.futility).
+	 * Cartea si telemetria sunt setate separat, ca sa poata fi comune mai
+	 * multor boti.
 	 *
-	 * @return The column where the turn was made.
+	 * @param hashSizeMb
+	 *            - dimensiunea tabelei daca bot.hash nu este setat
 	 */
-	public Move makeTurn(Field field) {
+	public static BotStarter fromProperties(int hashSizeMb) {
+		BotStarter bot = new BotStarter(Integer.getInteger("bot.hash", hashSizeMb),
+				Integer.getInteger("bot.threads", 1));
+		bot.setPonderEnabled(Boolean.getBoolean("bot.ponder"));
+		if (System.getProperty("bot.engine", "minimax").equals("mcts")) {
+			bot.useMcts(Integer.getInteger("bot.mctsNodes", 1 << 20));
+		}
 
-		ArrayList<Move> moves = field.getAvailableMoves();
-		Move move = new Move();
+		bot.setSolverThreshold(Integer.getInteger("bot.solver", 24));
+		String mode = System.getProperty("bot.search", "pvs");
+		bot.setSearchMode(mode.equals("alphabeta") ? Search.ALPHA_BETA
+				: mode.equals("aspiration") ? Search.ASPIRATION : mode.equals("mtdf") ? Search.MTDF : Search.PVS);
+		bot.setSelectivity(Integer.getInteger("bot.extensions", Search.MAX_EXTENSIONS),
+				Integer.getInteger("bot.quiescence", Search.QUIESCENCE_DEPTH));
+		bot.setPruning(Integer.getInteger("bot.lmr", Search.LMR_MOVES),
+				Integer.getInteger("bot.futility", Search.FUTILITY_MARGIN));
+		return bot;
+	}
 
-		// prima mutare
-		if (moves.size() == 81) {
-			move = new Move(4, 4);
-
-		// primele mutari
-		} else if (moves.size() >= 7 && !field.checkMacro()) {
-			int depth = 8;
-			boundaries(moves.get(0));
-			move = minimax(field, BotParser.mBotId, depth, Integer.MIN_VALUE, Integer.MAX_VALUE);
-
-		// cand am putine mutari
-		} else if (moves.size() <= 4) {
-			int depth = 8;
-			boundaries(moves.get(0));
-			move = minimax(field, BotParser.mBotId, depth, Integer.MIN_VALUE, Integer.MAX_VALUE);
-
-		// cand am multe mutari(branch factor mare)
-		} else if (moves.size() > 25) {
-			int depth = 5;
-			boundaries(moves.get(0));
-			move = minimax(field, BotParser.mBotId, depth, Integer.MIN_VALUE, Integer.MAX_VALUE);
-
-		// cand ma aflu spre mijlocul/finalul meciului
-		} else {
-			int depth = 7;
-			boundaries(moves.get(0));
-			move = minimax(field, BotParser.mBotId, depth, Integer.MIN_VALUE, Integer.MAX_VALUE);
-		}
+	/**
+	 * Cartea din bot.book (implicit book.bin), daca fisierul exista.
+	 */
+	static OpeningBook loadBook() throws IOException {
+		String book = System.getProperty("bot.book", "book.bin");
+		return new File(book).isFile() ? OpeningBook.load(book) : null;
+	}
 
-		// returnez cea mai buna mutare gasita
-		return move;
+	/**
+	 * Ponderile din fisierul bot.weights, daca este setat.
+	 */
+	static Weights loadWeights() throws IOException {
+		String weights = System.getProperty("bot.weights");
+		return weights != null ? Weights.load(weights) : null;
 	}
 
-	public static void main(String[] args) {
-		BotParser parser = new BotParser(new BotStarter());
+	public static void main(String[] args) throws IOException {
+		BotStarter bot = fromProperties(32);
+		if (Telemetry.ENABLED) {
+			bot.setTelemetry(Telemetry.open(System.getProperty("bot.telemetry")));
+		}
+		bot.setBook(loadBook());
+		bot.setWeights(loadWeights());
+
+		BotParser parser = new BotParser(bot);
 		parser.run();
 	}
 }
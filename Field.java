@@ -11,7 +11,7 @@
 //    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
 //    See the License for the specific language governing permissions and
 //    limitations under the License.
-//  
+//
 //    For the full copyright and license information, please view the LICENSE
 //    file that was distributed with this source code.
 
@@ -21,10 +21,18 @@ import java.util.ArrayList;
 
 /**
  * Field class
- * 
+ *
  * Handles everything that has to do with the field, such as storing the current
  * state and performing calculations on the field.
- * 
+ *
+ * Pozitia este retinuta sub forma de bitboard-uri: pentru fiecare player cate
+ * o masca de 9 biti pentru fiecare patrat, plus mastile din MacroBoard pentru
+ * patratele castigate, terminate la egal si cele in care se poate muta.
+ *
+ * Celulele sunt numerotate ca in protocol, 0..80, pe linii (y * 9 + x).
+ * Bitul unei celule in patratul ei este (y % 3) * 3 + x % 3, care este si
+ * indicele patratului catre care trimite mutarea.
+ *
  * @author Jim van Eeden <jim@starapple.nl>, Joost de Meij <joost@starapple.nl>
  */
 
@@ -32,21 +40,181 @@ public class Field {
 	@SuppressWarnings("unused")
 	private int mRoundNr;
 	private int mMoveNr;
-	private int[][] mBoard;
-	private int[][] mMacroboard;
 
 	private final int COLS = 9, ROWS = 9;
 	private String mLastError = "";
 
+	// toate cele 9 celule ale unui patrat
+	public static final int FULL = 0x1FF;
+
+	// secventele castigatoare dintr-un patrat de 3x3, ca masti de biti
+	public static final int[] LINES = new int[] { 0x007, 0x038, 0x1C0, 0x049, 0x092, 0x124, 0x111, 0x054 };
+
+	// WIN[mask] este true daca masca contine o secventa castigatoare
+	public static final boolean[] WIN = new boolean[512];
+
+	// patratul si bitul din patrat pentru fiecare celula
+	public static final int[] CELL_BOARD = new int[81];
+	public static final int[] CELL_BIT = new int[81];
+
+	// celula corespunzatoare unui bit dintr-un patrat
+	public static final int[][] BOARD_CELLS = new int[9][9];
+
+	// secventele (indici in LINES) din care face parte fiecare bit
+	public static final int[][] BIT_LINES = new int[9][];
+
+	// un patrat are 3^9 stari: fiecare bit valoreaza 0 (liber), 1 sau 2
+	// (player-ul) inmultit cu POW3[bit]
+	public static final int STATES = 19683;
+	public static final int[] POW3 = new int[] { 1, 3, 9, 27, 81, 243, 729, 2187, 6561 };
+
+	// OUTCOME[cod] - ce ar returna checkForVictory pentru patratul respectiv
+	public static final byte[] OUTCOME = new byte[STATES];
+
+	// THREATS[cod] - celulele libere care completeaza o secventa: in bitii
+	// 0-8 pentru player 1, in bitii 9-17 pentru player 2
+	public static final int[] THREATS = new int[STATES];
+
+	// chei Zobrist pentru fiecare celula ocupata de fiecare player si pentru
+	// fiecare combinatie de patrate active; seed fix, ca hash-urile sa fie
+	// aceleasi de la o rulare la alta
+	private static final long[][] ZOBRIST_CELL = new long[2][81];
+	private static final long[] ZOBRIST_ACTIVE = new long[512];
+
+	static {
+		java.util.Random random = new java.util.Random(0x5DEECE66DL);
+		for (int cell = 0; cell < 81; cell++) {
+			ZOBRIST_CELL[0][cell] = random.nextLong();
+			ZOBRIST_CELL[1][cell] = random.nextLong();
+		}
+		for (int active = 0; active < 512; active++) {
+			ZOBRIST_ACTIVE[active] = random.nextLong();
+		}
+
+		for (int mask = 0; mask < 512; mask++) {
+			for (int line : LINES) {
+				if ((mask & line) == line) {
+					WIN[mask] = true;
+					break;
+				}
+			}
+		}
+
+		for (int bit = 0; bit < 9; bit++) {
+			int count = 0;
+			for (int line : LINES)
+				if ((line & (1 << bit)) != 0)
+					count++;
+			BIT_LINES[bit] = new int[count];
+			count = 0;
+			for (int line = 0; line < 8; line++)
+				if ((LINES[line] & (1 << bit)) != 0)
+					BIT_LINES[bit][count++] = line;
+		}
+
+		for (int code = 0; code < STATES; code++) {
+			int first = decode(code, 1), second = decode(code, 2);
+
+			if (WIN[first])
+				OUTCOME[code] = 1;
+			else if (WIN[second])
+				OUTCOME[code] = 2;
+			else if ((first | second) == FULL)
+				OUTCOME[code] = -1;
+			else
+				THREATS[code] = threats(first, second) | (threats(second, first) << 9);
+		}
+
+		for (int cell = 0; cell < 81; cell++) {
+			int x = cell % 9, y = cell / 9;
+			CELL_BOARD[cell] = (y / 3) * 3 + x / 3;
+			CELL_BIT[cell] = (y % 3) * 3 + x % 3;
+			BOARD_CELLS[CELL_BOARD[cell]][CELL_BIT[cell]] = cell;
+		}
+	}
+
+	// mBoards[player - 1][patrat] - celulele ocupate de player in acel patrat
+	private int[][] mBoards;
+
+	// codul in baza 3 al fiecarui patrat, pentru OUTCOME, THREATS si
+	// scorurile din Weights
+	private int[] mCode;
+
+	// patratele castigate de fiecare player, cele egale si cele active
+	private int[] mMacroWon;
+	private int mMacroDrawn;
+	private int mMacroActive;
+
+	// pentru unMove retin celula, player-ul, vechile patrate active si
+	// daca mutarea a terminat patratul
+	private int[] mHistory;
+	private int mPly;
+
+	// hash-ul Zobrist al pozitiei transformate prin fiecare simetrie (vezi
+	// Symmetry), actualizate in setMove/unMove; mHashes[0] este hash-ul
+	// pozitiei insasi. Doar primele mTrackedSymmetries sunt tinute
+	// incremental, restul sunt calculate cand sunt cerute
+	private final long[] mHashes = new long[Symmetry.COUNT];
+	private int mTrackedSymmetries = 1;
+
+	// evaluarea incrementala, tot din setMove/unMove, pentru player 1:
+	// suma scorurilor patratelor neterminate (din tabela Weights.boardScore)
+	// si scorul MacroBoard-ului, tinut pe secvente
+	private Weights mWeights = Weights.DEFAULT;
+	private int mMicroScore;
+
+	// pentru MacroBoard retin si patratele egale, care blocheaza secventa
+	private int[][] mMacroLineCount;
+	private int mMacroScore;
+
 	public Field() {
-		mBoard = new int[COLS][ROWS];
-		mMacroboard = new int[COLS / 3][ROWS / 3];
+		mBoards = new int[2][9];
+		mMacroWon = new int[2];
+		mHistory = new int[81];
+		mCode = new int[9];
+		mMacroLineCount = new int[3][8];
 		clearBoard();
 	}
 
+	/**
+	 * Copiez pozitia din alt Field, de exemplu pentru thread-urile care cauta
+	 * in paralel pe propria copie.
+	 */
+	public void copyFrom(Field other) {
+		mRoundNr = other.mRoundNr;
+		mMoveNr = other.mMoveNr;
+		for (int board = 0; board < 9; board++) {
+			mBoards[0][board] = other.mBoards[0][board];
+			mBoards[1][board] = other.mBoards[1][board];
+			mCode[board] = other.mCode[board];
+		}
+		mMacroWon[0] = other.mMacroWon[0];
+		mMacroWon[1] = other.mMacroWon[1];
+		mMacroDrawn = other.mMacroDrawn;
+		mMacroActive = other.mMacroActive;
+		System.arraycopy(other.mHistory, 0, mHistory, 0, other.mPly);
+		mPly = other.mPly;
+		System.arraycopy(other.mHashes, 0, mHashes, 0, Symmetry.COUNT);
+		mTrackedSymmetries = other.mTrackedSymmetries;
+
+		mWeights = other.mWeights;
+		for (int p = 0; p < 3; p++)
+			System.arraycopy(other.mMacroLineCount[p], 0, mMacroLineCount[p], 0, 8);
+		mMicroScore = other.mMicroScore;
+		mMacroScore = other.mMacroScore;
+	}
+
+	/**
+	 * Schimb ponderile evaluarii si recalculez scorul pozitiei.
+	 */
+	public void setWeights(Weights weights) {
+		mWeights = weights;
+		computeEval();
+	}
+
 	/**
 	 * Parse data about the game given by the engine
-	 * 
+	 *
 	 * @param key
 	 *            : type of data given
 	 * @param value
@@ -66,59 +234,177 @@ public class Field {
 
 	/**
 	 * Initialise field from comma separated String
-	 * 
+	 *
 	 * @param String
 	 *            :
 	 */
 	public void parseFromString(String s) {
-		System.err.println("Move " + mMoveNr);
-		s = s.replace(";", ",");
-		String[] r = s.split(",");
-		int counter = 0;
-		for (int y = 0; y < ROWS; y++) {
-			for (int x = 0; x < COLS; x++) {
-				mBoard[x][y] = Integer.parseInt(r[counter]);
-				counter++;
+		byte[] data = s.getBytes(java.nio.charset.StandardCharsets.US_ASCII);
+		parseFromBytes(data, 0, data.length);
+	}
+
+	/**
+	 * Citesc field-ul direct din octetii primiti de la engine, fara sa creez
+	 * String-uri: 81 de valori separate prin ',' sau ';'.
+	 */
+	public void parseFromBytes(byte[] data, int from, int to) {
+		// patratele active vin separat, in macroboard, care poate ajunge si
+		// inaintea field-ului
+		int active = mMacroActive;
+		clearBoard();
+		mMacroActive = active;
+		int cell = 0;
+		for (int i = from; i < to && cell < 81; i++) {
+			byte c = data[i];
+			if (c == ',' || c == ';') {
+				cell++;
+			} else if (c == '1' || c == '2') {
+				int id = c - '0';
+				mBoards[id - 1][CELL_BOARD[cell]] |= 1 << CELL_BIT[cell];
+				mCode[CELL_BOARD[cell]] += id * POW3[CELL_BIT[cell]];
 			}
 		}
+		updateMacroStatus();
+		computeHash();
+		computeEval();
 	}
 
 	/**
 	 * Initialise macroboard from comma separated String
-	 * 
+	 *
 	 * @param String
 	 *            :
 	 */
 	public void parseMacroboardFromString(String s) {
-		String[] r = s.split(",");
-		int counter = 0;
-		for (int y = 0; y < 3; y++) {
-			for (int x = 0; x < 3; x++) {
-				mMacroboard[x][y] = Integer.parseInt(r[counter]);
-				counter++;
-			}
+		byte[] data = s.getBytes(java.nio.charset.StandardCharsets.US_ASCII);
+		parseMacroboardFromBytes(data, 0, data.length);
+	}
+
+	/**
+	 * Citesc macroboard-ul din octeti; patratele active sunt cele cu -1.
+	 */
+	public void parseMacroboardFromBytes(byte[] data, int from, int to) {
+		mMacroActive = 0;
+		int board = 0;
+		for (int i = from; i < to && board < 9; i++) {
+			if (data[i] == ',')
+				board++;
+			else if (data[i] == '-')
+				mMacroActive |= 1 << board;
 		}
+		mPly = 0;
+		computeHash();
+	}
+
+	/**
+	 * Calculez hash-urile de la zero, dupa ce citesc pozitia.
+	 */
+	private void computeHash() {
+		for (int s = 0; s < mTrackedSymmetries; s++)
+			mHashes[s] = computeHash(s);
+	}
+
+	/**
+	 * Tin incremental si hash-urile pozitiilor simetrice, pentru cheile
+	 * canonice din cautare. Costa cate o actualizare pentru fiecare simetrie
+	 * in setMove/unMove, asa ca implicit este tinut doar getHash().
+	 */
+	public void trackSymmetries(boolean track) {
+		int tracked = track ? Symmetry.COUNT : 1;
+		if (tracked != mTrackedSymmetries) {
+			mTrackedSymmetries = tracked;
+			computeHash();
+		}
+	}
+
+	/**
+	 * Recalculez patratele castigate si cele terminate la egal din celulele
+	 * ocupate. Pe platforma un patrat egal apare tot ca 0 in macroboard.
+	 */
+	private void updateMacroStatus() {
+		mMacroWon[0] = mMacroWon[1] = mMacroDrawn = 0;
+		for (int board = 0; board < 9; board++) {
+			int outcome = OUTCOME[mCode[board]];
+			if (outcome > 0)
+				mMacroWon[outcome - 1] |= 1 << board;
+			else if (outcome < 0)
+				mMacroDrawn |= 1 << board;
+		}
+	}
+
+	public void setRoundNr(int roundNr) {
+		mRoundNr = roundNr;
+	}
+
+	public void setMoveNr(int moveNr) {
+		mMoveNr = moveNr;
 	}
 
 	public void clearBoard() {
-		for (int x = 0; x < COLS; x++) {
-			for (int y = 0; y < ROWS; y++) {
-				mBoard[x][y] = 0;
-			}
+		for (int board = 0; board < 9; board++) {
+			mBoards[0][board] = 0;
+			mBoards[1][board] = 0;
+			mCode[board] = 0;
+		}
+		mMacroWon[0] = mMacroWon[1] = mMacroDrawn = 0;
+		mMacroActive = FULL;
+		mPly = 0;
+		computeHash();
+		computeEval();
+	}
+
+	/**
+	 * Recalculez de la zero evaluarea incrementala, dupa ce citesc pozitia.
+	 */
+	private void computeEval() {
+		for (int p = 0; p < 3; p++)
+			java.util.Arrays.fill(mMacroLineCount[p], 0);
+		mMicroScore = mMacroScore = 0;
+
+		for (int board = 0; board < 9; board++) {
+			int done = checkForVictory(board);
+			if (done == 0)
+				mMicroScore += mWeights.weights[board] * mWeights.boardScore[mCode[board]];
+			else
+				addToMacro(board, done > 0 ? done - 1 : 2, 1);
 		}
 	}
 
-	public int[][] getmMacroboard() {
-		return mMacroboard;
+	/**
+	 * Marchez (delta = 1) sau demarchez (delta = -1) patratul in MacroBoard ca
+	 * fiind castigat de player-ul p, sau egal pentru p = 2.
+	 */
+	private void addToMacro(int board, int p, int delta) {
+		int[][] lineScore = mWeights.lineScore;
+		int[] first = mMacroLineCount[0], second = mMacroLineCount[1], drawn = mMacroLineCount[2];
+		int score = mMacroScore;
+
+		for (int line : BIT_LINES[board]) {
+			if (drawn[line] == 0)
+				score -= lineScore[first[line]][second[line]];
+			mMacroLineCount[p][line] += delta;
+			if (drawn[line] == 0)
+				score += lineScore[first[line]][second[line]];
+		}
+
+		if (p < 2)
+			score += (p == 0 ? delta : -delta) * mWeights.cellWeights[board];
+		mMacroScore = score;
 	}
 
-	public int[][] getmBoard() {
-		return mBoard;
+	/**
+	 * Evaluarea pozitiei pentru player, tinuta incremental. Este acelasi scor
+	 * ca Weights.evaluate, doar ca nu il mai calculez de la zero in fiecare
+	 * frunza.
+	 */
+	public int evaluate(int player) {
+		int value = mMacroScore * mWeights.MacroBoardWeight + mMicroScore;
+		return player == 1 ? value : -value;
 	}
 
 	/**
 	 * Preiau mutarile valabile in acest moment.
-	 * 
+	 *
 	 * @return
 	 */
 	public ArrayList<Move> getAvailableMoves() {
@@ -126,7 +412,7 @@ public class Field {
 
 		for (int y = 0; y < ROWS; y++) {
 			for (int x = 0; x < COLS; x++) {
-				if (isInActiveMicroboard(x, y) && mBoard[x][y] == 0) {
+				if (isInActiveMicroboard(x, y) && getPlayerId(x, y) == 0) {
 					moves.add(new Move(x, y));
 				}
 			}
@@ -136,142 +422,75 @@ public class Field {
 	}
 
 	/**
-	 * Verific care este patratul in care trebuie sa pun.
+	 * Scriu mutarile valabile, impachetate ca int (vezi Move.pack), in buffer-ul
+	 * primit, fara sa aloc nimic. Buffer-ul trebuie sa aiba cel putin 81 de
+	 * elemente.
+	 *
+	 * @return numarul de mutari scrise
 	 */
-	public Boolean isInActiveMicroboard(int x, int y) {
-		return mMacroboard[(int) x / 3][(int) y / 3] == -1;
-	}
-
-	/**
-	 * Matrice auxiliara pe care o folosesc pentru a prelua o matrice din
-	 * mBoard.
-	 * 
-	 * @param lx
-	 *            - lowX
-	 * @param hx
-	 *            - highX
-	 * @param ly
-	 *            - lowY
-	 * @param hy
-	 *            - highY
-	 * @return a 3x3 matrix
-	 */
-	public int[][] matrix(int lx, int hx, int ly, int hy) {
-		int[][] matrix = new int[3][3];
-		int i = 0, j = 0;
-		for (int x = lx; x < hx; x++) {
-			for (int y = ly; y < hy; y++) {
-				matrix[i][j] = mBoard[x][y];
-				j++;
+	public int generateMoves(int[] moves) {
+		if (!hasAvailableMoves())
+			return 0;
+
+		int count = 0;
+		for (int boards = mMacroActive; boards != 0; boards &= boards - 1) {
+			int board = Integer.numberOfTrailingZeros(boards);
+			int[] cells = BOARD_CELLS[board];
+			for (int free = ~(mBoards[0][board] | mBoards[1][board]) & FULL; free != 0; free &= free - 1) {
+				moves[count++] = cells[Integer.numberOfTrailingZeros(free)];
 			}
-			i++;
-			j = 0;
 		}
 
-		return matrix;
+		return count;
+	}
 
+	/**
+	 * Verific in O(1) daca se mai poate muta: jocul nu este castigat si exista
+	 * un patrat activ. Patratele active nu sunt terminate, deci au celule libere.
+	 */
+	public boolean hasAvailableMoves() {
+		return mMacroActive != 0 && !WIN[mMacroWon[0]] && !WIN[mMacroWon[1]];
+	}
+
+	/**
+	 * Verific care este patratul in care trebuie sa pun.
+	 */
+	public Boolean isInActiveMicroboard(int x, int y) {
+		return (mMacroActive & (1 << CELL_BOARD[toCell(x, y)])) != 0;
 	}
 
 	/**
 	 * Verifica daca sunt trimis catre un patrat castigat. In acest caz, exista
-	 * mai multe valori de -1 in MacroBoard.
-	 * 
+	 * mai multe patrate active in MacroBoard.
+	 *
 	 * @return
 	 */
 	public boolean checkMacro() {
-		int count = 0;
-		for (int x = 0; x < 3; x++) {
-			for (int y = 0; y < 3; y++) {
-				if (mMacroboard[x][y] == -1)
-					count++;
-			}
-		}
-		if (count > 1)
-			return true;
-		return false;
+		return Integer.bitCount(mMacroActive) > 1;
 	}
 
 	/**
 	 * Verific daca este victorie, infrangere sau egal intr-un patrat de 3x3.
-	 * Daca nu este nixiuna, returnez 0.
-	 * 
+	 * Daca nu este niciuna, returnez 0.
+	 *
+	 * @param board
+	 *            - indicele patratului, (y / 3) * 3 + x / 3
 	 * @return id-ul playerului castigator, -1 in caz de egal sau 0.
 	 */
-	public int checkForVictory(int lx, int hx, int ly, int hy) {
-
-		boolean victory = false;
-		int id;
-
-		// creez o matrice noua
-		// pe care o preiau din Mboard de la acele coordonate.
-		int[][] matrix = matrix(lx, hx, ly, hy);
-
-		// Verific liniile din matrice
-		for (int x = 0; x < 3; x++) {
-			id = matrix[x][0];
-
-			if (id != 0) {
-				victory = true;
-
-				for (int y = 0; y < 3; y++) {
-					if (matrix[x][y] != id) {
-						victory = false;
-						break;
-					}
-				}
-
-				if (victory == true)
-					return id;
-			}
-		}
-
-		// Verific coloanele din matrice
-		for (int y = 0; y < 3; y++) {
-
-			id = matrix[0][y];
-
-			if (id != 0) {
-				victory = true;
-				for (int x = 0; x < 3; x++) {
-
-					if (matrix[x][y] != id) {
-						victory = false;
-						break;
-					}
-				}
-				if (victory == true)
-					return id;
-			}
-		}
-
-		// Verific diagonala principala din matrice
-		id = matrix[0][0];
-		if (matrix[1][1] == id && matrix[2][2] == id) {
-			return id;
-		}
-
-		// Verific diagonala secundara din matrice
-		id = matrix[0][2];
-		if (matrix[1][1] == id && matrix[2][0] == id) {
-			return id;
-		}
-
-		// Daca mai exista celule libere, atunci nu este un patrat terminat
-		// returnez 0 in acest caz
-		for (int x = 0; x < 3; x++) {
-			for (int y = 0; y < 3; y++) {
-				if (matrix[x][y] == 0)
-					return 0;
-			}
-		}
+	public int checkForVictory(int board) {
+		return OUTCOME[mCode[board]];
+	}
 
-		// altfel este egalitate
-		return -1;
+	/**
+	 * Celulele libere din patrat cu care player-ul ar castiga patratul.
+	 */
+	public int getThreats(int player, int board) {
+		return (THREATS[mCode[board]] >>> (9 * (player - 1))) & FULL;
 	}
 
 	/**
 	 * Returns reason why addMove returns false
-	 * 
+	 *
 	 * @param args
 	 *            :
 	 * @return : reason why addMove returns false
@@ -280,142 +499,111 @@ public class Field {
 		return mLastError;
 	}
 
-	/**
-	 * Setez castigatorul intr-un patrat din MacroBoard.
-	 * 
-	 * @param x
-	 * @param y
-	 * @param winner
-	 */
-	public void setWinnerMicroSquare(int x, int y, int winner) {
-		mMacroboard[x][y] = winner;
-
-	}
-
 	/**
 	 * Setez mutarea curenta.
 	 */
-
 	public void setMove(int x, int y, int player) {
-
-		mBoard[x][y] = player;
-
-		mMacroboard[x / 3][y / 3] = 0;
-
-		// daca patratul catre care trimite mutarea are valoarea 0, il fac -1
-		// daca patratul catre care trimite mutarea e terminat
-		// atunci toate patratele cu valoarea 0 devin -1
-		if (mMacroboard[x % 3][y % 3] == 0)
-			mMacroboard[x % 3][y % 3] = -1;
-		else if (mMacroboard[x % 3][y % 3] == 1 || mMacroboard[x % 3][y % 3] == 2 || mMacroboard[x % 3][y % 3] == -2)
-			clearMacroBoardWhenSentToAWonSquare();
-
+		setMove(toCell(x, y), player);
 	}
 
 	/**
-	 * Fac unMove la o mutare setata de setMove. Operatiile sunt in oglinda.
+	 * Setez mutarea curenta. Daca mutarea castiga sau umple patratul, il
+	 * marchez in MacroBoard. Daca patratul catre care trimite mutarea este
+	 * terminat, toate patratele neterminate devin active.
 	 */
-	public void unMove(int x, int y, int player) {
-		mBoard[x][y] = player;
+	public void setMove(int cell, int player) {
+		int board = CELL_BOARD[cell], bit = CELL_BIT[cell];
+		int p = player - 1;
+		int undo = cell | (mMacroActive << 7) | (p << 18);
+
+		int weight = mWeights.weights[board];
+		int[] boardScore = mWeights.boardScore;
+		mMicroScore -= weight * boardScore[mCode[board]];
+
+		mBoards[p][board] |= 1 << bit;
+		int code = mCode[board] += (p + 1) * POW3[bit];
+
+		int outcome = OUTCOME[code];
+		if (outcome > 0) {
+			mMacroWon[p] |= 1 << board;
+			addToMacro(board, p, 1);
+			undo |= 1 << 16;
+		} else if (outcome < 0) {
+			mMacroDrawn |= 1 << board;
+			addToMacro(board, 2, 1);
+			undo |= 1 << 17;
+		} else {
+			mMicroScore += weight * boardScore[code];
+		}
+
+		int done = mMacroWon[0] | mMacroWon[1] | mMacroDrawn;
+		int active = (done & (1 << bit)) != 0 ? ~done & FULL : 1 << bit;
 
-		if (mMacroboard[x % 3][y % 3] == -1)
-			mMacroboard[x % 3][y % 3] = 0;
-		else if (mMacroboard[x % 3][y % 3] == 1 || mMacroboard[x % 3][y % 3] == 2 || mMacroboard[x % 3][y % 3] == -2)
-			unClearMacroBoardWhenSentToAWonSquare();
+		updateHashes(p, cell, active);
+		mMacroActive = active;
 
-		mMacroboard[x / 3][y / 3] = -1;
+		mHistory[mPly++] = undo;
 	}
 
 	/**
-	 * Daca oponentul ma trimite catre un patrat castigat, atunci toate valorile
-	 * cu 0 din MacroBoard devin -1. Valabil pentru ambii playeri.
+	 * Fac unMove la ultima mutare setata de setMove. Operatiile sunt in
+	 * oglinda.
 	 */
-	public void clearMacroBoardWhenSentToAWonSquare() {
-		for (int x = 0; x < 3; x++) {
-			for (int y = 0; y < 3; y++) {
-				if (mMacroboard[x][y] == 0)
-					mMacroboard[x][y] = -1;
-			}
+	public void unMove() {
+		int undo = mHistory[--mPly];
+		int cell = undo & 0x7F, p = (undo >>> 18) & 1;
+		int board = CELL_BOARD[cell];
+
+		int weight = mWeights.weights[board];
+		int[] boardScore = mWeights.boardScore;
+		if ((undo & (1 << 16)) != 0) {
+			mMacroWon[p] &= ~(1 << board);
+			addToMacro(board, p, -1);
+		} else if ((undo & (1 << 17)) != 0) {
+			mMacroDrawn &= ~(1 << board);
+			addToMacro(board, 2, -1);
+		} else {
+			mMicroScore -= weight * boardScore[mCode[board]];
 		}
+
+		mBoards[p][board] &= ~(1 << CELL_BIT[cell]);
+		int code = mCode[board] -= (p + 1) * POW3[CELL_BIT[cell]];
+		mMicroScore += weight * boardScore[code];
+
+		int active = (undo >>> 7) & FULL;
+		updateHashes(p, cell, active);
+		mMacroActive = active;
 	}
 
 	/**
-	 * Cand fac unMove in urma unei mutari care a trimis catre un patrat
-	 * terminat.
+	 * Adaug sau scot celula player-ului p si schimb patratele active in
+	 * active, in hash-urile tinute incremental; operatia este propria ei
+	 * inversa.
 	 */
-	public void unClearMacroBoardWhenSentToAWonSquare() {
-		for (int x = 0; x < 3; x++) {
-			for (int y = 0; y < 3; y++) {
-				if (mMacroboard[x][y] == -1)
-					mMacroboard[x][y] = 0;
-			}
+	private void updateHashes(int p, int cell, int active) {
+		long[] zobrist = ZOBRIST_CELL[p];
+		for (int s = 0; s < mTrackedSymmetries; s++) {
+			int[] masks = Symmetry.MASKS[s];
+			mHashes[s] ^= zobrist[Symmetry.CELLS[s][cell]] ^ ZOBRIST_ACTIVE[masks[mMacroActive]]
+					^ ZOBRIST_ACTIVE[masks[active]];
 		}
 	}
 
 	/**
 	 * Verific daca este victorie, infrangere sau egal in MacroBoard. Daca nu
-	 * este niuciuna returnez 0.
-	 * 
-	 * @return id-ul player-ului castigator, -1 in caz de egal sau 0.
+	 * este niciuna returnez 0.
+	 *
+	 * @return id-ul player-ului castigator, -3 in caz de egal sau 0.
 	 */
 	public int checkmMacroBoardForVictory() {
-
-		boolean victory = false;
-		int id;
-
-		// Verific liniile
-		for (int x = 0; x < 3; x++) {
-			id = mMacroboard[x][0];
-
-			if (id != 0 && id != -1 && id != -2) {
-				victory = true;
-
-				for (int y = 0; y < 3; y++) {
-					if (mMacroboard[x][y] != id) {
-						victory = false;
-						break;
-					}
-				}
-
-				if (victory == true)
-					return id;
-			}
-		}
-
-		// Verific coloanele
-		for (int y = 0; y < 3; y++) {
-			id = mMacroboard[0][y];
-
-			if (id != 0 && id != -1 && id != -2) {
-				victory = true;
-
-				for (int x = 0; x < 3; x++) {
-					if (mMacroboard[x][y] != id) {
-						victory = false;
-						break;
-					}
-				}
-				if (victory == true)
-					return id;
-			}
-		}
-
-		// Verific diagonala principala
-		id = mMacroboard[0][0];
-		if (mMacroboard[1][1] == id && mMacroboard[2][2] == id) {
-			return id;
-		}
-
-		// Verific diagonala secundara
-		id = mMacroboard[0][2];
-		if (mMacroboard[1][1] == id && mMacroboard[2][0] == id) {
-			return id;
-		}
+		if (WIN[mMacroWon[0]])
+			return 1;
+		if (WIN[mMacroWon[1]])
+			return 2;
 
 		// daca mai exista mutari, se mai poate juca
-		if (getAvailableMoves().size() > 0) {
+		if (hasAvailableMoves())
 			return 0;
-		}
 
 		// altfel este egalitate
 		return -3;
@@ -424,43 +612,48 @@ public class Field {
 	@Override
 	/**
 	 * Creates comma separated String with player ids for the microboards.
-	 * 
+	 *
 	 * @param args
 	 *            :
 	 * @return : String with player names for every cell, or 'empty' when cell
 	 *         is empty.
 	 */
 	public String toString() {
-		String r = "";
-		int counter = 0;
-		for (int y = 0; y < ROWS; y++) {
-			for (int x = 0; x < COLS; x++) {
-				if (counter > 0) {
-					r += ",";
-				}
-				r += mBoard[x][y];
-				counter++;
+		StringBuilder r = new StringBuilder();
+		for (int cell = 0; cell < 81; cell++) {
+			if (cell > 0) {
+				r.append(',');
 			}
+			r.append(getPlayerId(cell % 9, cell / 9));
 		}
-		return r;
+		return r.toString();
 	}
 
 	/**
 	 * Checks whether the field is full
-	 * 
+	 *
 	 * @param args
 	 *            :
 	 * @return : Returns true when field is full, otherwise returns false.
 	 */
 	public boolean isFull() {
-		for (int x = 0; x < COLS; x++)
-			for (int y = 0; y < ROWS; y++)
-				if (mBoard[x][y] == 0)
-					return false; // At least one cell is not filled
+		for (int board = 0; board < 9; board++)
+			if ((mBoards[0][board] | mBoards[1][board]) != FULL)
+				return false; // At least one cell is not filled
 		// All cells are filled
 		return true;
 	}
 
+	/**
+	 * Numarul de celule libere de pe tabla.
+	 */
+	public int getEmptyCells() {
+		int empty = 81;
+		for (int board = 0; board < 9; board++)
+			empty -= Integer.bitCount(mBoards[0][board] | mBoards[1][board]);
+		return empty;
+	}
+
 	public int getNrColumns() {
 		return COLS;
 	}
@@ -470,35 +663,192 @@ public class Field {
 	}
 
 	public boolean isEmpty() {
-		for (int x = 0; x < COLS; x++) {
-			for (int y = 0; y < ROWS; y++) {
-				if (mBoard[x][y] > 0) {
-					return false;
-				}
+		for (int board = 0; board < 9; board++) {
+			if ((mBoards[0][board] | mBoards[1][board]) != 0) {
+				return false;
 			}
 		}
 		return true;
 	}
 
 	/**
-	 * Preiau MacroBoard.
-	 * 
+	 * Preiau valoarea din MacroBoard, ca in protocol: -1 pentru patratele
+	 * active, id-ul castigatorului sau 0.
+	 *
 	 * @param column
 	 * @param row
 	 * @return
 	 */
 	public int getPlayerIdFromMacro(int column, int row) {
-		return mMacroboard[column][row];
+		int board = row * 3 + column;
+		if ((mMacroActive & (1 << board)) != 0)
+			return -1;
+		return Math.max(checkForVictory(board), 0);
 	}
 
 	/**
 	 * Returneaza id-ul player-ului de la pozitia respectiva.
-	 * 
+	 *
 	 * @param args
 	 *            : int column, int row
 	 * @return : int
 	 */
 	public int getPlayerId(int column, int row) {
-		return mBoard[column][row];
+		int cell = toCell(column, row);
+		int bit = 1 << CELL_BIT[cell];
+		if ((mBoards[0][CELL_BOARD[cell]] & bit) != 0)
+			return 1;
+		if ((mBoards[1][CELL_BOARD[cell]] & bit) != 0)
+			return 2;
+		return 0;
+	}
+
+	/**
+	 * Celulele ocupate de player in patratul respectiv.
+	 */
+	public int getBoardMask(int player, int board) {
+		return mBoards[player - 1][board];
+	}
+
+	/**
+	 * Patratele din MacroBoard castigate de player.
+	 */
+	public int getMacroWon(int player) {
+		return mMacroWon[player - 1];
+	}
+
+	/**
+	 * Patratele din MacroBoard terminate la egal.
+	 */
+	public int getMacroDrawn() {
+		return mMacroDrawn;
+	}
+
+	/**
+	 * Patratele din MacroBoard in care se poate muta.
+	 */
+	public int getMacroActive() {
+		return mMacroActive;
+	}
+
+	/**
+	 * Patratele inca deschise care, castigate de player, i-ar completa o
+	 * secventa in MacroBoard.
+	 */
+	public int getMacroThreats(int player) {
+		int won = mMacroWon[player - 1];
+		int open = FULL & ~(mMacroWon[0] | mMacroWon[1] | mMacroDrawn);
+		int threats = 0;
+		for (int board = 0; board < 9; board++) {
+			if ((open & (1 << board)) != 0 && WIN[won | (1 << board)])
+				threats |= 1 << board;
+		}
+		return threats;
+	}
+
+	/**
+	 * Masca celulelor player-ului (1 sau 2) dintr-un cod in baza 3.
+	 */
+	public static int decode(int code, int player) {
+		int mask = 0;
+		for (int bit = 0; bit < 9; bit++, code /= 3) {
+			if (code % 3 == player)
+				mask |= 1 << bit;
+		}
+		return mask;
+	}
+
+	/**
+	 * Celulele libere care completeaza o secventa a player-ului.
+	 */
+	private static int threats(int mine, int theirs) {
+		int threats = 0;
+		for (int line : LINES) {
+			int missing = line & ~mine;
+			if (Integer.bitCount(missing) == 1 && (missing & theirs) == 0)
+				threats |= missing;
+		}
+		return threats;
+	}
+
+	/**
+	 * Hash-ul Zobrist al pozitiei curente.
+	 */
+	public long getHash() {
+		return mHashes[0];
+	}
+
+	/**
+	 * Hash-ul pozitiei transformate prin simetria data (vezi Symmetry). Pentru
+	 * simetria 0 este egal cu getHash().
+	 */
+	public long getHash(int symmetry) {
+		return symmetry < mTrackedSymmetries ? mHashes[symmetry] : computeHash(symmetry);
+	}
+
+	/**
+	 * Hash-ul pozitiei canonice, acelasi pentru toate pozitiile simetrice.
+	 */
+	public long getCanonicalHash() {
+		return getHash(getCanonicalSymmetry());
+	}
+
+	/**
+	 * Simetriile, fara identitate, care lasa pozitia neschimbata, ca masca de
+	 * biti.
+	 */
+	public int getSymmetries() {
+		int symmetries = 0;
+		for (int s = 1; s < Symmetry.COUNT; s++) {
+			if (getHash(s) == mHashes[0])
+				symmetries |= 1 << s;
+		}
+		return symmetries;
+	}
+
+	/**
+	 * Hash-ul pozitiei transformate prin simetria data, calculat de la zero;
+	 * Perft il compara cu cel tinut incremental (vezi trackSymmetries).
+	 */
+	public long computeHash(int symmetry) {
+		int[] cells = Symmetry.CELLS[symmetry];
+		long hash = ZOBRIST_ACTIVE[Symmetry.MASKS[symmetry][mMacroActive]];
+		for (int board = 0; board < 9; board++) {
+			for (int p = 0; p < 2; p++) {
+				for (int bits = mBoards[p][board]; bits != 0; bits &= bits - 1) {
+					hash ^= ZOBRIST_CELL[p][cells[BOARD_CELLS[board][Integer.numberOfTrailingZeros(bits)]]];
+				}
+			}
+		}
+		return hash;
+	}
+
+	/**
+	 * Simetria cu cel mai mic hash; pozitiile simetrice ajung prin ea in
+	 * aceeasi pozitie canonica.
+	 */
+	public int getCanonicalSymmetry() {
+		int best = 0;
+		long bestHash = mHashes[0];
+		for (int s = 1; s < Symmetry.COUNT; s++) {
+			long hash = getHash(s);
+			if (hash < bestHash) {
+				bestHash = hash;
+				best = s;
+			}
+		}
+		return best;
+	}
+
+	public static int toCell(int x, int y) {
+		return y * 9 + x;
+	}
+
+	public static int cellX(int cell) {
+		return cell % 9;
+	}
+
+	public static int cellY(int cell) {
+		return cell / 9;
 	}
-}
\ No newline at end of file
+}
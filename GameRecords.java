@@ -0,0 +1,449 @@
+// // Copyright 2016 theaigames.com (developers@theaigames.com)
+
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+
+//        http://www.apache.org/licenses/LICENSE-2.0
+
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+//    For the full copyright and license information, please view the LICENSE
+//    file that was distributed with this source code.
+
+package bot;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * GameRecords class
+ *
+ * Fisier binar cu partide intregi, pentru Tune, cartea de deschideri si
+ * testele de regresie. Fiecare partida are doi octeti de antet (numarul de
+ * mutari si rezultatul) si cate un octet pentru fiecare mutare (celula,
+ * 0..80), deci o pozitie costa un octet in loc de cele cateva sute ale
+ * textului din protocol.
+ *
+ * Fisierul incepe cu magic si versiune (8 octeti). Partidele sunt grupate in
+ * blocuri de BLOCK_GAMES; dupa ele urmeaza indexul, cu offset-ul fiecarui
+ * bloc (4 octeti), si la final offset-ul indexului, numarul de blocuri, de
+ * partide, de mutari si din nou magic (24 de octeti). La citire fisierul
+ * este mapat in memorie; o partida este identificata de offset-ul ei, iar
+ * pozitiile sunt refacute pe un Field dat, fara alocari.
+ *
+ * java bot.GameRecords import <iesire.bin> [fisier...]
+ * java bot.GameRecords info|check <fisier.bin>
+ * java bot.GameRecords dump <fisier.bin> [partida]
+ */
+
+public class GameRecords {
+	private static final int MAGIC = 0x55545447, VERSION = 1;
+	private static final int HEADER_SIZE = 8, TRAILER_SIZE = 24;
+
+	// cate partide are un bloc din index
+	public static final int BLOCK_GAMES = 4096;
+
+	// rezultatul unei partide: necunoscut, castigata de player 1 sau 2, egal
+	public static final int UNKNOWN = 0, DRAW = 3;
+
+	private final MappedByteBuffer mData;
+	private final int mIndex, mBlocks, mGames;
+	private final long mMoves;
+
+	private GameRecords(MappedByteBuffer data) {
+		mData = data;
+		int trailer = data.capacity() - TRAILER_SIZE;
+		if (data.capacity() < HEADER_SIZE + TRAILER_SIZE || data.getInt(0) != MAGIC
+				|| data.getInt(trailer + 20) != MAGIC)
+			throw new IllegalArgumentException("not a game record file");
+		if (data.getInt(4) != VERSION)
+			throw new IllegalArgumentException("unsupported game record version " + data.getInt(4));
+		mIndex = data.getInt(trailer);
+		mBlocks = data.getInt(trailer + 4);
+		mGames = data.getInt(trailer + 8);
+		mMoves = data.getLong(trailer + 12);
+	}
+
+	/**
+	 * Mapez fisierul in memorie.
+	 */
+	public static GameRecords open(String path) throws IOException {
+		try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+			return new GameRecords(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	/**
+	 * Daca fisierul incepe ca un fisier de partide.
+	 */
+	public static boolean isRecordFile(String path) throws IOException {
+		try (DataInputStream in = new DataInputStream(new FileInputStream(path))) {
+			return in.available() >= HEADER_SIZE && in.readInt() == MAGIC;
+		} catch (java.io.EOFException e) {
+			return false;
+		}
+	}
+
+	public int size() {
+		return mGames;
+	}
+
+	public int blocks() {
+		return mBlocks;
+	}
+
+	public long moves() {
+		return mMoves;
+	}
+
+	/**
+	 * Offset-ul partidei: primul offset din bloc, apoi sar peste partidele
+	 * dinaintea ei.
+	 */
+	public int offset(int game) {
+		int offset = mData.getInt(mIndex + 4 * (game / BLOCK_GAMES));
+		for (int i = game % BLOCK_GAMES; i > 0; i--)
+			offset = next(offset);
+		return offset;
+	}
+
+	public int length(int offset) {
+		return mData.get(offset) & 0xFF;
+	}
+
+	public int result(int offset) {
+		return mData.get(offset + 1);
+	}
+
+	public int move(int offset, int ply) {
+		return mData.get(offset + 2 + ply);
+	}
+
+	public int next(int offset) {
+		return offset + 2 + length(offset);
+	}
+
+	/**
+	 * Primeste fiecare pozitie dintr-o partida refacuta; field este refolosit
+	 * si nu trebuie modificat.
+	 */
+	public interface PositionVisitor {
+
+		/**
+		 * @param player
+		 *            - player-ul care muta
+		 * @param move
+		 *            - celula jucata din aceasta pozitie, -1 pentru pozitia
+		 *            finala a unei partide neterminate
+		 * @param result
+		 *            - rezultatul partidei (UNKNOWN, 1, 2 sau DRAW)
+		 */
+		void visit(Field field, int player, int move, int result);
+	}
+
+	/**
+	 * Refac partidele din [from, to) pe field si dau visitor-ului fiecare
+	 * pozitie, inainte de mutare. O partida neterminata (importata dintr-un
+	 * log care se opreste inainte de ultima mutare) are si pozitia finala, cu
+	 * mutarea -1. O mutare invalida inseamna un fisier stricat.
+	 */
+	public void replay(int from, int to, Field field, PositionVisitor visitor) {
+		int offset = from < to ? offset(from) : 0;
+		for (int game = from; game < to; game++) {
+			int length = length(offset), result = result(offset);
+			field.clearBoard();
+			for (int ply = 0; ply < length; ply++) {
+				int cell = move(offset, ply), player = ply % 2 + 1;
+				if (!isLegal(field, cell))
+					throw new IllegalStateException("illegal move " + cell + " in game " + game + " ply " + ply);
+				visitor.visit(field, player, cell, result);
+				field.setMove(cell, player);
+			}
+			if (field.checkmMacroBoardForVictory() == 0)
+				visitor.visit(field, length % 2 + 1, -1, result);
+			offset = next(offset);
+		}
+	}
+
+	/**
+	 * Refac partidele din blocul dat.
+	 */
+	public void replayBlock(int block, Field field, PositionVisitor visitor) {
+		replay(block * BLOCK_GAMES, Math.min(mGames, (block + 1) * BLOCK_GAMES), field, visitor);
+	}
+
+	static boolean isLegal(Field field, int cell) {
+		return cell >= 0 && cell < 81 && field.checkmMacroBoardForVictory() == 0
+				&& (field.getMacroActive() & (1 << Field.CELL_BOARD[cell])) != 0
+				&& field.getPlayerId(Field.cellX(cell), Field.cellY(cell)) == 0;
+	}
+
+	/**
+	 * Rezultatul din field daca jocul s-a terminat, altfel UNKNOWN.
+	 */
+	static int resultOf(Field field) {
+		int status = field.checkmMacroBoardForVictory();
+		return status == -3 ? DRAW : status > 0 ? status : UNKNOWN;
+	}
+
+	/**
+	 * Scrie partidele in ordinea in care sunt adaugate; indexul si finalul
+	 * sunt scrise la close. add poate fi apelat din mai multe thread-uri.
+	 */
+	public static class Writer implements Closeable {
+		private final DataOutputStream mOut;
+		private int mOffset = HEADER_SIZE, mGames;
+		private long mMoves;
+		private int[] mBlocks = new int[16];
+
+		public Writer(String path) throws IOException {
+			mOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path), 1 << 16));
+			mOut.writeInt(MAGIC);
+			mOut.writeInt(VERSION);
+		}
+
+		/**
+		 * @param moves
+		 *            - celulele jucate, de la tabla goala
+		 * @param result
+		 *            - UNKNOWN, 1, 2 sau DRAW
+		 */
+		public synchronized void add(int[] moves, int length, int result) throws IOException {
+			if ((long) mOffset + 2 + length > Integer.MAX_VALUE - 4L * (mGames / BLOCK_GAMES + 1) - TRAILER_SIZE)
+				throw new IllegalStateException("game record file is limited to 2 GB");
+			if (mGames % BLOCK_GAMES == 0) {
+				if (mGames / BLOCK_GAMES == mBlocks.length)
+					mBlocks = Arrays.copyOf(mBlocks, mBlocks.length * 2);
+				mBlocks[mGames / BLOCK_GAMES] = mOffset;
+			}
+
+			mOut.writeByte(length);
+			mOut.writeByte(result);
+			for (int ply = 0; ply < length; ply++)
+				mOut.writeByte(moves[ply]);
+			mOffset += 2 + length;
+			mGames++;
+			mMoves += length;
+		}
+
+		public synchronized int size() {
+			return mGames;
+		}
+
+		@Override
+		public synchronized void close() throws IOException {
+			int blocks = (mGames + BLOCK_GAMES - 1) / BLOCK_GAMES;
+			for (int block = 0; block < blocks; block++)
+				mOut.writeInt(mBlocks[block]);
+			mOut.writeInt(mOffset);
+			mOut.writeInt(blocks);
+			mOut.writeInt(mGames);
+			mOut.writeLong(mMoves);
+			mOut.writeInt(MAGIC);
+			mOut.close();
+		}
+	}
+
+	/**
+	 * Import din loguri text: fisierul scris de Referee cu
+	 * referee.positions (field, macroboard, rezultat) sau un log al
+	 * protocolului (liniile "update game field"). Refac mutarile din
+	 * diferenta dintre doua pozitii consecutive, de cel mult doua celule, cate
+	 * una a fiecarui player. O pozitie care nu continua partida curenta
+	 * incepe alta; partidele care nu pornesc de la tabla goala (sau cu o
+	 * singura mutare) sunt ignorate.
+	 *
+	 * @return cate partide am scris
+	 */
+	public static int importText(BufferedReader in, Writer out) throws IOException {
+		Field game = new Field(), parsed = new Field();
+		int[] moves = new int[81], cells = new int[2];
+		int length = -1, result = UNKNOWN, imported = 0;
+
+		for (String line = in.readLine(); line != null; line = in.readLine()) {
+			String[] parts = line.trim().split("\\s+");
+			String field;
+			String label = null;
+			if (parts.length >= 4 && parts[0].equals("update") && parts[2].equals("field")) {
+				field = parts[3];
+			} else if (parts.length >= 1 && parts[0].indexOf(',') > 0 && !parts[0].startsWith("update")) {
+				field = parts[0];
+				label = parts.length >= 3 ? parts[2] : null;
+			} else {
+				continue;
+			}
+
+			try {
+				parsed.parseFromBytes(field.getBytes(), 0, field.length());
+			} catch (RuntimeException e) {
+				continue;
+			}
+
+			int added = length < 0 ? -1 : extend(game, parsed, moves, length, cells);
+			if (added < 0) {
+				if (length > 0) {
+					write(out, game, moves, length, result);
+					imported++;
+				}
+
+				// o partida noua poate incepe doar de la tabla goala sau cu o
+				// singura mutare
+				game.clearBoard();
+				length = -1;
+				int stones = 81 - parsed.getEmptyCells();
+				if (stones <= 1) {
+					length = 0;
+					if (stones == 1)
+						length = extend(game, parsed, moves, 0, cells);
+				}
+				result = UNKNOWN;
+			} else {
+				length = added;
+			}
+
+			if (label != null && length >= 0) {
+				result = label.equals("1") ? 1 : label.equals("0") ? 2 : label.equals("0.5") ? DRAW : UNKNOWN;
+			}
+		}
+		if (length > 0) {
+			write(out, game, moves, length, result);
+			imported++;
+		}
+		return imported;
+	}
+
+	/**
+	 * Continui partida din game pana la pozitia parsed.
+	 *
+	 * @return noul numar de mutari sau -1 daca parsed nu o continua
+	 */
+	private static int extend(Field game, Field parsed, int[] moves, int length, int[] cells) {
+		int count = 0;
+		for (int cell = 0; cell < 81; cell++) {
+			int before = game.getPlayerId(Field.cellX(cell), Field.cellY(cell));
+			int after = parsed.getPlayerId(Field.cellX(cell), Field.cellY(cell));
+			if (before == after)
+				continue;
+			if (before != 0 || count == 2)
+				return -1;
+			cells[count++] = cell;
+		}
+		if (count == 0)
+			return length;
+
+		// mutarile sunt pe rand: intai player-ul care muta in game
+		int player = length % 2 + 1;
+		if (parsed.getPlayerId(Field.cellX(cells[0]), Field.cellY(cells[0])) != player) {
+			int t = cells[0];
+			cells[0] = cells[1];
+			cells[1] = t;
+		}
+		for (int i = 0; i < count; i++) {
+			int cell = cells[i];
+			if (parsed.getPlayerId(Field.cellX(cell), Field.cellY(cell)) != player || !isLegal(game, cell))
+				return -1;
+			game.setMove(cell, player);
+			moves[length++] = cell;
+			player = player % 2 + 1;
+		}
+		return length;
+	}
+
+	/**
+	 * Rezultatul din pozitie, daca partida s-a terminat, altfel cel din log.
+	 */
+	private static void write(Writer out, Field game, int[] moves, int length, int result) throws IOException {
+		int outcome = resultOf(game);
+		out.add(moves, length, outcome != UNKNOWN ? outcome : result);
+	}
+
+	/**
+	 * Scriu pozitiile in formatul text al Tune si Analyze: field, macroboard
+	 * si rezultatul pentru player 1.
+	 */
+	private static void dump(GameRecords records, int from, int to, PrintStream out) {
+		records.replay(from, to, new Field(), (field, player, move, result) -> {
+			StringBuilder macroboard = new StringBuilder();
+			for (int board = 0; board < 9; board++) {
+				if (board > 0)
+					macroboard.append(',');
+				macroboard.append(field.getPlayerIdFromMacro(board % 3, board / 3));
+			}
+			String label = result == 1 ? "1" : result == 2 ? "0" : result == DRAW ? "0.5" : "?";
+			out.println(field + " " + macroboard + " " + label);
+		});
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("usage: GameRecords import <out.bin> [file...] | info|check <file.bin>"
+					+ " | dump <file.bin> [game]");
+			return;
+		}
+
+		long start = System.nanoTime();
+		if (args[0].equals("import")) {
+			int games = 0;
+			try (Writer out = new Writer(args[1])) {
+				if (args.length == 2) {
+					games += importText(new BufferedReader(new InputStreamReader(System.in)), out);
+				}
+				for (int i = 2; i < args.length; i++) {
+					try (BufferedReader in = new BufferedReader(new FileReader(args[i]))) {
+						games += importText(in, out);
+					}
+				}
+			}
+			System.err.println("imported " + games + " games");
+		} else if (args[0].equals("info") || args[0].equals("check")) {
+			GameRecords records = open(args[1]);
+			long size = records.mData.capacity();
+			System.out.println("games " + records.size() + " moves " + records.moves() + " blocks "
+					+ records.blocks() + " bytes " + size + " bytes/move "
+					+ String.format("%.2f", (double) size / Math.max(1, records.moves())));
+			if (args[0].equals("check")) {
+				long[] counts = new long[4];
+				Field field = new Field();
+				for (int block = 0; block < records.blocks(); block++) {
+					records.replayBlock(block, field, (f, player, move, result) -> counts[0]++);
+				}
+				for (int game = 0, offset = records.offset(0); game < records.size(); game++) {
+					counts[1 + (records.result(offset) == 1 ? 0 : records.result(offset) == 2 ? 1 : 2)]++;
+					offset = records.next(offset);
+				}
+				System.out.println("check ok: " + counts[0] + " positions replayed, player 1 " + counts[1]
+						+ " player 2 " + counts[2] + " draws or unknown " + counts[3]);
+			}
+		} else if (args[0].equals("dump")) {
+			GameRecords records = open(args[1]);
+			PrintStream out = new PrintStream(new BufferedOutputStream(System.out), false);
+			if (args.length > 2) {
+				int game = Integer.parseInt(args[2]);
+				dump(records, game, game + 1, out);
+			} else {
+				dump(records, 0, records.size(), out);
+			}
+			out.flush();
+		}
+		System.err.println("done in " + (System.nanoTime() - start) / 1000000L + " ms");
+	}
+}
@@ -0,0 +1,298 @@
+// // Copyright 2016 theaigames.com (developers@theaigames.com)
+
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+
+//        http://www.apache.org/licenses/LICENSE-2.0
+
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+//    For the full copyright and license information, please view the LICENSE
+//    file that was distributed with this source code.
+
+package bot;
+
+/**
+ * Mcts class
+ *
+ * Monte Carlo Tree Search (UCT), ca alternativa la minimax. Nodurile sunt
+ * tinute intr-o arena de vectori (un vector pentru fiecare camp), adresate
+ * prin indici int, iar copiii unui nod sunt alocati unul dupa altul. Nici
+ * selectia, nici playout-urile nu aloca obiecte.
+ *
+ * Fiecare thread are propriul arbore (root parallelization); BotStarter aduna
+ * vizitele mutarilor de la radacina din toti arborii. Intre ture pastrez
+ * subarborele pozitiei in care am ajuns, daca il gasesc.
+ */
+
+public class Mcts {
+
+	// constanta de explorare din UCT
+	private static final double EXPLORATION = 1.2;
+
+	private final int mCapacity;
+
+	// campurile nodurilor; copiii unui nod sunt intre mFirstChild si
+	// mFirstChild + mChildCount, iar mFirstChild = -1 pentru nodurile
+	// neexpandate
+	private final int[] mParent;
+	private final int[] mFirstChild;
+	private final byte[] mChildCount;
+	private final byte[] mCell;
+	private final int[] mVisits;
+	private final float[] mWins;
+
+	private int mSize;
+	private int mRoot;
+	private int mRootPlayer;
+
+	// mField este mereu pozitia de la radacina intre iteratii
+	private final Field mField = new Field();
+	private final int[] mMoves = new int[81];
+
+	private long mRandom;
+	private long mIterations;
+	private volatile boolean mStop;
+
+	/**
+	 * @param capacity
+	 *            - numarul maxim de noduri din arbore
+	 * @param seed
+	 *            - seed pentru playout-uri, diferit pentru fiecare thread
+	 */
+	public Mcts(int capacity, long seed) {
+		mCapacity = capacity;
+		mParent = new int[capacity];
+		mFirstChild = new int[capacity];
+		mChildCount = new byte[capacity];
+		mCell = new byte[capacity];
+		mVisits = new int[capacity];
+		mWins = new float[capacity];
+		mRandom = seed == 0 ? 0x9E3779B97F4A7C15L : seed;
+		reset();
+	}
+
+	/**
+	 * Golesc arborele; ramane doar radacina.
+	 */
+	private void reset() {
+		mSize = 0;
+		mRoot = newNode(-1, 0);
+	}
+
+	private int newNode(int parent, int cell) {
+		int node = mSize++;
+		mParent[node] = parent;
+		mFirstChild[node] = -1;
+		mChildCount[node] = 0;
+		mCell[node] = (byte) cell;
+		mVisits[node] = 0;
+		mWins[node] = 0;
+		return node;
+	}
+
+	/**
+	 * Caut pana la deadline sau pana sunt oprit, pornind din pozitia data.
+	 *
+	 * @param player
+	 *            - player-ul care muta in pozitia data
+	 */
+	public void run(Field field, int player, long deadline) {
+		reroot(field, player);
+		mIterations = 0;
+
+		while (!mStop) {
+			iterate();
+			if ((++mIterations & 63) == 0 && System.nanoTime() >= deadline)
+				break;
+		}
+	}
+
+	/**
+	 * Pastrez subarborele pozitiei noi, daca este la doua mutari (a mea si a
+	 * oponentului) de vechea radacina. Altfel, sau daca arena este aproape
+	 * plina, o iau de la capat.
+	 */
+	private void reroot(Field field, int player) {
+		int found = -1;
+
+		if (mRootPlayer == player && mSize < mCapacity * 3 / 4 && mFirstChild[mRoot] >= 0) {
+			int other = player % 2 + 1;
+			long hash = field.getHash();
+
+			for (int i = 0; i < mChildCount[mRoot] && found < 0; i++) {
+				int child = mFirstChild[mRoot] + i;
+				if (mFirstChild[child] < 0)
+					continue;
+
+				mField.setMove(mCell[child], player);
+				for (int j = 0; j < mChildCount[child]; j++) {
+					int grandchild = mFirstChild[child] + j;
+					mField.setMove(mCell[grandchild], other);
+					if (mField.getHash() == hash)
+						found = grandchild;
+					mField.unMove();
+					if (found >= 0)
+						break;
+				}
+				mField.unMove();
+			}
+		}
+
+		mField.copyFrom(field);
+		mRootPlayer = player;
+		if (found >= 0) {
+			mRoot = found;
+			mParent[found] = -1;
+		} else {
+			reset();
+		}
+	}
+
+	/**
+	 * O iteratie: selectie cu UCT pana la o frunza, expandare, playout
+	 * aleator si propagarea rezultatului inapoi spre radacina.
+	 */
+	private void iterate() {
+		int node = mRoot;
+		int player = mRootPlayer;
+		int depth = 0;
+
+		// selectie
+		while (mFirstChild[node] >= 0 && mChildCount[node] > 0) {
+			node = select(node);
+			mField.setMove(mCell[node], player);
+			player = player % 2 + 1;
+			depth++;
+		}
+
+		// expandare
+		int result = mField.checkmMacroBoardForVictory();
+		if (result == 0 && mFirstChild[node] < 0 && mSize + 81 <= mCapacity) {
+			expand(node);
+			node = mFirstChild[node];
+			mField.setMove(mCell[node], player);
+			player = player % 2 + 1;
+			depth++;
+			result = mField.checkmMacroBoardForVictory();
+		}
+
+		// playout
+		int leafPlayer = player;
+		while (result == 0) {
+			int count = mField.generateMoves(mMoves);
+			mField.setMove(Move.cell(mMoves[nextInt(count)]), player);
+			player = player % 2 + 1;
+			depth++;
+			result = mField.checkmMacroBoardForVictory();
+		}
+
+		// propagare; scorul unui nod este pentru player-ul care a mutat in el
+		int mover = leafPlayer % 2 + 1;
+		float reward = result == mover ? 1f : result == -3 ? 0.5f : 0f;
+		for (int n = node; n >= 0; n = mParent[n]) {
+			mVisits[n]++;
+			mWins[n] += reward;
+			reward = 1f - reward;
+		}
+
+		for (int i = 0; i < depth; i++) {
+			mField.unMove();
+		}
+	}
+
+	private int select(int node) {
+		int first = mFirstChild[node], count = mChildCount[node];
+		double logVisits = Math.log(mVisits[node]);
+		int best = first;
+		double bestValue = Double.NEGATIVE_INFINITY;
+
+		for (int child = first; child < first + count; child++) {
+			int visits = mVisits[child];
+			if (visits == 0)
+				return child;
+
+			double value = mWins[child] / visits + EXPLORATION * Math.sqrt(logVisits / visits);
+			if (value > bestValue) {
+				bestValue = value;
+				best = child;
+			}
+		}
+		return best;
+	}
+
+	private void expand(int node) {
+		int count = mField.generateMoves(mMoves);
+
+		// amestec copiii, ca primele vizite sa nu fie mereu in acelasi patrat
+		for (int i = count - 1; i > 0; i--) {
+			int j = nextInt(i + 1);
+			int move = mMoves[i];
+			mMoves[i] = mMoves[j];
+			mMoves[j] = move;
+		}
+
+		mFirstChild[node] = mSize;
+		mChildCount[node] = (byte) count;
+		for (int i = 0; i < count; i++) {
+			newNode(node, Move.cell(mMoves[i]));
+		}
+	}
+
+	/**
+	 * xorshift64, ca sa nu aloc si sa nu impart un Random intre thread-uri.
+	 */
+	private int nextInt(int bound) {
+		long x = mRandom;
+		x ^= x << 13;
+		x ^= x >>> 7;
+		x ^= x << 17;
+		mRandom = x;
+		return (int) ((x >>> 33) % bound);
+	}
+
+	/**
+	 * Adun vizitele fiecarei mutari de la radacina, indexate dupa celula.
+	 */
+	public void addRootVisits(int[] visits) {
+		int first = mFirstChild[mRoot];
+		if (first < 0)
+			return;
+		for (int child = first; child < first + mChildCount[mRoot]; child++) {
+			visits[mCell[child]] += mVisits[child];
+		}
+	}
+
+	/**
+	 * Procentul de victorii pentru mutarea de la radacina, pentru log.
+	 */
+	public int getWinRate(int cell) {
+		int first = mFirstChild[mRoot];
+		for (int child = first; first >= 0 && child < first + mChildCount[mRoot]; child++) {
+			if (mCell[child] == cell && mVisits[child] > 0)
+				return (int) (mWins[child] * 100 / mVisits[child]);
+		}
+		return 0;
+	}
+
+	public void stop() {
+		mStop = true;
+	}
+
+	public void clearStop() {
+		mStop = false;
+	}
+
+	public long getIterations() {
+		return mIterations;
+	}
+
+	public int getSize() {
+		return mSize;
+	}
+}
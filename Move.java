@@ -22,10 +22,16 @@ package bot;
  * 
  * Stores a move.
  * 
+ * In cautare mutarile sunt retinute ca int: celula (0..80) in bitii 0-6 si
+ * un scor de ordonare in bitii de la 8 in sus, ca sa nu aloc obiecte.
+ * 
  * @author Jim van Eeden <jim@starapple.nl>, Joost de Meij <joost@starapple.nl>
  */
 
 public class Move {
+	public static final int CELL_MASK = 0x7F;
+	public static final int SCORE_SHIFT = 8;
+
 	int mX, mY, score;
 
 	public int getScore() {
@@ -52,4 +58,19 @@ public class Move {
 		return mY;
 	}
 
+	/**
+	 * Impachetez celula si scorul de ordonare intr-un int.
+	 */
+	public static int pack(int cell, int score) {
+		return cell | (score << SCORE_SHIFT);
+	}
+
+	public static int cell(int move) {
+		return move & CELL_MASK;
+	}
+
+	public static int score(int move) {
+		return move >> SCORE_SHIFT;
+	}
+
 }
@@ -0,0 +1,243 @@
+// // Copyright 2016 theaigames.com (developers@theaigames.com)
+
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+
+//        http://www.apache.org/licenses/LICENSE-2.0
+
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+//    For the full copyright and license information, please view the LICENSE
+//    file that was distributed with this source code.
+
+package bot;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * OpeningBook class
+ *
+ * Cartea de deschideri: pentru pozitiile din primele mutari retine mutarea
+ * gasita de o cautare adanca, facuta offline. Pozitiile simetrice apar o
+ * singura data, in forma canonica (vezi Field.getCanonicalSymmetry), iar
+ * mutarea este retinuta in aceeasi forma.
+ *
+ * Fisierul are cate o intrare de 16 octeti pentru fiecare pozitie, sortate
+ * dupa hash: hash-ul canonic (8 octeti), celula (4) si scorul (4). La rulare
+ * fisierul este mapat in memorie si caut in el cu cautare binara.
+ *
+ * Cu un fisier de partide (GameRecords), cartea are doar pozitiile care au
+ * aparut in partide, in loc de toate pozitiile din primele plies mutari.
+ *
+ * java bot.OpeningBook <fisier> [plies] [depth] [threads] [partide.bin]
+ */
+
+public class OpeningBook {
+	private static final int ENTRY_SIZE = 16;
+
+	private final MappedByteBuffer mEntries;
+	private final int mSize;
+
+	private OpeningBook(MappedByteBuffer entries) {
+		mEntries = entries;
+		mSize = entries.capacity() / ENTRY_SIZE;
+	}
+
+	/**
+	 * Mapez fisierul cartii in memorie.
+	 */
+	public static OpeningBook load(String path) throws IOException {
+		try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+			return new OpeningBook(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	/**
+	 * Caut pozitia in carte.
+	 *
+	 * @return mutarea din carte, cu scorul pentru player-ul care muta, sau
+	 *         null daca pozitia nu este in carte
+	 */
+	public Move probe(Field field) {
+		int symmetry = field.getCanonicalSymmetry();
+		long key = field.getHash(symmetry);
+
+		int low = 0, high = mSize - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			long entry = mEntries.getLong(middle * ENTRY_SIZE);
+			if (entry < key) {
+				low = middle + 1;
+			} else if (entry > key) {
+				high = middle - 1;
+			} else {
+				int cell = Symmetry.INVERSE[symmetry][mEntries.getInt(middle * ENTRY_SIZE + 8)];
+
+				// o coliziune de hash ar putea da o mutare invalida
+				if ((field.getMacroActive() & (1 << Field.CELL_BOARD[cell])) == 0
+						|| field.getPlayerId(Field.cellX(cell), Field.cellY(cell)) != 0)
+					return null;
+
+				Move move = new Move(Field.cellX(cell), Field.cellY(cell));
+				move.setScore(mEntries.getInt(middle * ENTRY_SIZE + 12));
+				return move;
+			}
+		}
+		return null;
+	}
+
+	public int size() {
+		return mSize;
+	}
+
+	/**
+	 * Construiesc cartea: adun pozitiile canonice cu mai putin de plies
+	 * mutari (toate sau doar cele din records, daca nu este null) si le caut
+	 * pe toate, in paralel, pana la adancimea data.
+	 */
+	public static void build(String path, int plies, int depth, int threads, GameRecords records)
+			throws Exception {
+		Map<Long, int[]> positions = new HashMap<Long, int[]>();
+		if (records != null)
+			collect(records, plies, positions);
+		else
+			collect(new Field(), new int[plies], 0, plies, positions);
+		List<int[]> lines = new ArrayList<int[]>(positions.values());
+		System.err.println(lines.size() + " positions");
+
+		long[] keys = new long[lines.size()];
+		int[] cells = new int[lines.size()];
+		int[] scores = new int[lines.size()];
+		AtomicInteger next = new AtomicInteger();
+		AtomicInteger done = new AtomicInteger();
+
+		ExecutorService workers = Executors.newFixedThreadPool(threads);
+		List<Future<?>> running = new ArrayList<Future<?>>();
+		for (int t = 0; t < threads; t++) {
+			running.add(workers.submit(() -> {
+				Search search = new Search(new TranspositionTable(64), 0);
+				Field field = new Field();
+				for (int i = next.getAndIncrement(); i < lines.size(); i = next.getAndIncrement()) {
+					int[] line = lines.get(i);
+					field.clearBoard();
+					for (int ply = 0; ply < line.length; ply++) {
+						field.setMove(line[ply], ply % 2 + 1);
+					}
+
+					int player = line.length % 2 + 1;
+					search.runFixedDepth(field, player, player, depth);
+
+					int symmetry = field.getCanonicalSymmetry();
+					keys[i] = field.getHash(symmetry);
+					cells[i] = Symmetry.CELLS[symmetry][search.getCompletedCell()];
+					scores[i] = search.getCompletedScore();
+
+					if (done.incrementAndGet() % 100 == 0)
+						System.err.println(done.get() + "/" + lines.size());
+				}
+			}));
+		}
+		workers.shutdown();
+
+		// o cautare esuata ar lasa in carte o intrare cu cheia 0, asa ca
+		// opresc si celelalte thread-uri si nu scriu fisierul
+		for (Future<?> future : running) {
+			try {
+				future.get();
+			} catch (ExecutionException e) {
+				next.set(lines.size());
+				throw new IllegalStateException("book search failed", e.getCause());
+			}
+		}
+
+		Integer[] order = new Integer[keys.length];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		java.util.Arrays.sort(order, (a, b) -> Long.compare(keys[a], keys[b]));
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path)))) {
+			for (int i : order) {
+				out.writeLong(keys[i]);
+				out.writeInt(cells[i]);
+				out.writeInt(scores[i]);
+			}
+		}
+	}
+
+	/**
+	 * Adun pozitiile in care jocul nu s-a terminat, cate una pentru fiecare
+	 * pozitie canonica, impreuna cu mutarile prin care se ajunge in ele.
+	 */
+	private static void collect(Field field, int[] line, int ply, int plies, Map<Long, int[]> positions) {
+		if (ply == plies || field.checkmMacroBoardForVictory() != 0)
+			return;
+
+		long key = field.getCanonicalHash();
+		if (positions.containsKey(key))
+			return;
+		positions.put(key, java.util.Arrays.copyOf(line, ply));
+
+		int[] moves = new int[81];
+		int count = field.generateMoves(moves);
+		for (int i = 0; i < count; i++) {
+			line[ply] = Move.cell(moves[i]);
+			field.setMove(line[ply], ply % 2 + 1);
+			collect(field, line, ply + 1, plies, positions);
+			field.unMove();
+		}
+	}
+
+	/**
+	 * Adun pozitiile canonice din primele plies mutari ale partidelor.
+	 */
+	private static void collect(GameRecords records, int plies, Map<Long, int[]> positions) {
+		Field field = new Field();
+		int[] line = new int[plies];
+		for (int game = 0, offset = records.offset(0); game < records.size(); game++) {
+			field.clearBoard();
+			int length = Math.min(plies, records.length(offset));
+			for (int ply = 0; ply < length && field.checkmMacroBoardForVictory() == 0; ply++) {
+				long key = field.getCanonicalHash();
+				if (!positions.containsKey(key))
+					positions.put(key, java.util.Arrays.copyOf(line, ply));
+				line[ply] = records.move(offset, ply);
+				field.setMove(line[ply], ply % 2 + 1);
+			}
+			offset = records.next(offset);
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		String path = args.length > 0 ? args[0] : "book.bin";
+		int plies = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+		int depth = args.length > 2 ? Integer.parseInt(args[2]) : 12;
+		int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+		GameRecords records = args.length > 4 ? GameRecords.open(args[4]) : null;
+
+		long start = System.nanoTime();
+		build(path, plies, depth, threads, records);
+		System.err.println("done in " + (System.nanoTime() - start) / 1000000000L + " s");
+	}
+}
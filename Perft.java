@@ -0,0 +1,357 @@
+// // Copyright 2016 theaigames.com (developers@theaigames.com)
+
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+
+//        http://www.apache.org/licenses/LICENSE-2.0
+
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+//    For the full copyright and license information, please view the LICENSE
+//    file that was distributed with this source code.
+
+package bot;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Perft class
+ *
+ * Verific generarea mutarilor din Field. Are doua moduri:
+ *
+ * perft - numar frunzele pana la o adancime data (la ultimul nivel doar
+ * numar mutarile, fara sa le fac) si afisez nodurile pe secunda;
+ *
+ * diff - joc partide aleatoare in paralel pe Field si pe Reference, o
+ * implementare simpla cu matrici, si ma opresc la prima diferenta de mutari,
+ * de stare a jocului, de evaluare, de hash-uri simetrice sau de hash dupa
+ * unMove.
+ *
+ * java bot.Perft perft <depth> [field macroboard]
+ * java bot.Perft diff <games> [seed]
+ */
+
+public class Perft {
+
+	private final int[][] mMoves = new int[82][81];
+
+	/**
+	 * Numar pozitiile de la adancimea data.
+	 *
+	 * @param player
+	 *            - player-ul care muta
+	 */
+	public long perft(Field field, int player, int depth, int ply) {
+		int[] moves = mMoves[ply];
+		int count = field.generateMoves(moves);
+		if (depth == 1)
+			return count;
+
+		long nodes = 0;
+		for (int i = 0; i < count; i++) {
+			field.setMove(Move.cell(moves[i]), player);
+			nodes += perft(field, player % 2 + 1, depth - 1, ply + 1);
+			field.unMove();
+		}
+		return nodes;
+	}
+
+	public static void main(String[] args) {
+		String mode = args.length > 0 ? args[0] : "perft";
+
+		if (mode.equals("perft")) {
+			int depth = args.length > 1 ? Integer.parseInt(args[1]) : 6;
+			Field field = new Field();
+			if (args.length > 3) {
+				field.parseFromString(args[2]);
+				field.parseMacroboardFromString(args[3]);
+			}
+			runPerft(field, sideToMove(field), depth);
+		} else if (mode.equals("diff")) {
+			int games = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+			long seed = args.length > 2 ? Long.parseLong(args[2]) : System.nanoTime();
+			if (!runDiff(games, seed))
+				System.exit(1);
+		} else {
+			System.err.println("usage: perft <depth> [field macroboard] | diff <games> [seed]");
+			System.exit(2);
+		}
+	}
+
+	private static void runPerft(Field field, int player, int maxDepth) {
+		Perft perft = new Perft();
+		for (int depth = 1; depth <= maxDepth; depth++) {
+			long start = System.nanoTime();
+			long nodes = perft.perft(field, player, depth, 0);
+			long time = System.nanoTime() - start;
+			System.out.println("perft " + depth + " nodes " + nodes + " time " + time / 1000000 + " ms nps "
+					+ nodes * 1000000000L / Math.max(1, time));
+		}
+	}
+
+	/**
+	 * Player 1 incepe, deci muta cand are acelasi numar de celule ca player 2.
+	 */
+	private static int sideToMove(Field field) {
+		int first = 0, second = 0;
+		for (int board = 0; board < 9; board++) {
+			first += Integer.bitCount(field.getBoardMask(1, board));
+			second += Integer.bitCount(field.getBoardMask(2, board));
+		}
+		return first == second ? 1 : 2;
+	}
+
+	/**
+	 * Joc partide aleatoare pe ambele implementari. La fiecare mutare compar
+	 * pozitiile, iar la final fac unMove pana la inceput si verific ca fiecare
+	 * pozitie intermediara revine exact cum era.
+	 *
+	 * @return false la prima diferenta
+	 */
+	private static boolean runDiff(int games, long seed) {
+		Random random = new Random(seed);
+		Field field = new Field();
+		Reference reference = new Reference();
+		int[] moves = new int[81];
+		int[] cells = new int[81];
+		long[] hashes = new long[82];
+		int[] played = new int[81];
+		long positions = 0;
+
+		field.trackSymmetries(true);
+		for (int game = 0; game < games; game++) {
+			field.clearBoard();
+			reference.clear();
+			int player = 1, ply = 0;
+
+			while (true) {
+				hashes[ply] = field.getHash();
+				String error = compare(field, reference, moves, cells);
+				positions++;
+				if (error != null) {
+					report(seed, game, played, ply, error, field, reference);
+					return false;
+				}
+				if (field.checkmMacroBoardForVictory() != 0)
+					break;
+
+				int count = field.generateMoves(moves);
+				int cell = Move.cell(moves[random.nextInt(count)]);
+				field.setMove(cell, player);
+				reference.setMove(cell % 9, cell / 9, player);
+				played[ply++] = cell;
+				player = player % 2 + 1;
+			}
+
+			while (ply > 0) {
+				field.unMove();
+				reference.unMove();
+				ply--;
+				String error = compare(field, reference, moves, cells);
+				if (error == null && field.getHash() != hashes[ply])
+					error = "hash after unMove";
+				if (error != null) {
+					report(seed, game, played, ply, error, field, reference);
+					return false;
+				}
+			}
+		}
+
+		System.out.println("diff ok: " + games + " games, " + positions + " positions, seed " + seed);
+		return true;
+	}
+
+	private static String compare(Field field, Reference reference, int[] moves, int[] cells) {
+		for (int y = 0; y < 9; y++) {
+			for (int x = 0; x < 9; x++) {
+				if (field.getPlayerId(x, y) != reference.mBoard[x][y])
+					return "cell " + x + "," + y;
+			}
+		}
+		for (int board = 0; board < 9; board++) {
+			if (field.getPlayerIdFromMacro(board % 3, board / 3) != reference.getMacro(board))
+				return "macroboard " + board;
+		}
+
+		int count = field.generateMoves(moves);
+		for (int i = 0; i < count; i++) {
+			cells[i] = Move.cell(moves[i]);
+		}
+		Arrays.sort(cells, 0, count);
+		int[] expected = reference.getMoves();
+		if (!Arrays.equals(Arrays.copyOf(cells, count), expected))
+			return "moves " + Arrays.toString(Arrays.copyOf(cells, count)) + " expected " + Arrays.toString(expected);
+
+		if (field.checkmMacroBoardForVictory() != reference.getStatus())
+			return "status " + field.checkmMacroBoardForVictory() + " expected " + reference.getStatus();
+
+		if (field.evaluate(1) != Weights.DEFAULT.evaluate(field, 1))
+			return "evaluate " + field.evaluate(1) + " expected " + Weights.DEFAULT.evaluate(field, 1);
+
+		for (int s = 0; s < Symmetry.COUNT; s++) {
+			if (field.getHash(s) != field.computeHash(s))
+				return "hash for symmetry " + s;
+		}
+
+		return null;
+	}
+
+	private static void report(long seed, int game, int[] played, int ply, String error, Field field,
+			Reference reference) {
+		System.out.println("diff failed: " + error);
+		System.out.println("seed " + seed + " game " + game + " ply " + ply);
+		System.out.println("moves " + Arrays.toString(Arrays.copyOf(played, ply)));
+		System.out.println("field " + field);
+		System.out.println("reference " + reference);
+	}
+
+	/**
+	 * Regulile jocului scrise cat mai direct, fara tabele si fara bitboard-uri,
+	 * ca referinta pentru Field. unMove restaureaza o copie a MacroBoard-ului.
+	 */
+	static class Reference {
+		private static final int DRAW = 3, ACTIVE = -1;
+
+		final int[][] mBoard = new int[9][9];
+
+		// 1 sau 2 pentru patratele castigate, DRAW, ACTIVE sau 0
+		private int[] mMacro = new int[9];
+
+		private final int[][] mMacroHistory = new int[81][];
+		private final int[] mCellHistory = new int[81];
+		private int mPly;
+
+		Reference() {
+			clear();
+		}
+
+		void clear() {
+			for (int[] column : mBoard) {
+				Arrays.fill(column, 0);
+			}
+			Arrays.fill(mMacro, ACTIVE);
+			mPly = 0;
+		}
+
+		void setMove(int x, int y, int player) {
+			mMacroHistory[mPly] = mMacro.clone();
+			mCellHistory[mPly++] = y * 9 + x;
+			mBoard[x][y] = player;
+
+			int board = (y / 3) * 3 + x / 3;
+			if (microWinner(board) != 0)
+				mMacro[board] = player;
+			else if (microFull(board))
+				mMacro[board] = DRAW;
+
+			int next = (y % 3) * 3 + x % 3;
+			boolean free = isDone(next);
+			for (int b = 0; b < 9; b++) {
+				if (!isDone(b))
+					mMacro[b] = free || b == next ? ACTIVE : 0;
+			}
+		}
+
+		void unMove() {
+			int cell = mCellHistory[--mPly];
+			mBoard[cell % 9][cell / 9] = 0;
+			mMacro = mMacroHistory[mPly];
+		}
+
+		private boolean isDone(int board) {
+			return mMacro[board] == 1 || mMacro[board] == 2 || mMacro[board] == DRAW;
+		}
+
+		private int microWinner(int board) {
+			int x0 = (board % 3) * 3, y0 = (board / 3) * 3;
+			for (int i = 0; i < 3; i++) {
+				int row = line(mBoard[x0][y0 + i], mBoard[x0 + 1][y0 + i], mBoard[x0 + 2][y0 + i]);
+				int column = line(mBoard[x0 + i][y0], mBoard[x0 + i][y0 + 1], mBoard[x0 + i][y0 + 2]);
+				if (row != 0)
+					return row;
+				if (column != 0)
+					return column;
+			}
+			int diagonal = line(mBoard[x0][y0], mBoard[x0 + 1][y0 + 1], mBoard[x0 + 2][y0 + 2]);
+			if (diagonal != 0)
+				return diagonal;
+			return line(mBoard[x0 + 2][y0], mBoard[x0 + 1][y0 + 1], mBoard[x0][y0 + 2]);
+		}
+
+		private boolean microFull(int board) {
+			int x0 = (board % 3) * 3, y0 = (board / 3) * 3;
+			for (int x = x0; x < x0 + 3; x++) {
+				for (int y = y0; y < y0 + 3; y++) {
+					if (mBoard[x][y] == 0)
+						return false;
+				}
+			}
+			return true;
+		}
+
+		private static int line(int a, int b, int c) {
+			return a != 0 && a == b && b == c ? a : 0;
+		}
+
+		private int macroWinner() {
+			int[] m = mMacro;
+			int[][] lines = { { 0, 1, 2 }, { 3, 4, 5 }, { 6, 7, 8 }, { 0, 3, 6 }, { 1, 4, 7 }, { 2, 5, 8 },
+					{ 0, 4, 8 }, { 2, 4, 6 } };
+			for (int[] l : lines) {
+				if ((m[l[0]] == 1 || m[l[0]] == 2) && m[l[0]] == m[l[1]] && m[l[1]] == m[l[2]])
+					return m[l[0]];
+			}
+			return 0;
+		}
+
+		/**
+		 * Ca in Field.getPlayerIdFromMacro: -1 activ, castigatorul sau 0.
+		 */
+		int getMacro(int board) {
+			return mMacro[board] == DRAW ? 0 : mMacro[board];
+		}
+
+		/**
+		 * Ca in Field.checkmMacroBoardForVictory.
+		 */
+		int getStatus() {
+			int winner = macroWinner();
+			if (winner != 0)
+				return winner;
+			return getMoves().length > 0 ? 0 : -3;
+		}
+
+		/**
+		 * Celulele valabile, crescator.
+		 */
+		int[] getMoves() {
+			if (macroWinner() != 0)
+				return new int[0];
+			int[] cells = new int[81];
+			int count = 0;
+			for (int cell = 0; cell < 81; cell++) {
+				int x = cell % 9, y = cell / 9;
+				if (mBoard[x][y] == 0 && mMacro[(y / 3) * 3 + x / 3] == ACTIVE)
+					cells[count++] = cell;
+			}
+			return Arrays.copyOf(cells, count);
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder s = new StringBuilder();
+			for (int y = 0; y < 9; y++) {
+				for (int x = 0; x < 9; x++) {
+					s.append(y + x > 0 ? "," : "").append(mBoard[x][y]);
+				}
+			}
+			return s.append(" macro ").append(Arrays.toString(mMacro)).toString();
+		}
+	}
+}
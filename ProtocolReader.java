@@ -0,0 +1,153 @@
+// // Copyright 2016 theaigames.com (developers@theaigames.com)
+
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+
+//        http://www.apache.org/licenses/LICENSE-2.0
+
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+//    For the full copyright and license information, please view the LICENSE
+//    file that was distributed with this source code.
+
+package bot;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * ProtocolReader class
+ *
+ * Citesc comenzile de la engine direct din octeti, fara Scanner, split sau
+ * String-uri intermediare. Linia curenta ramane in buffer; cuvintele ei sunt
+ * citite pe rand cu nextToken si comparate cu constante de octeti, iar
+ * field-ul si macroboard-ul sunt decodate de Field direct din buffer.
+ */
+
+public class ProtocolReader {
+	private final InputStream mIn;
+	private byte[] mBuffer = new byte[1 << 16];
+
+	// octetii cititi sunt in [0, mLimit); linia curenta este in
+	// [mLineStart, mLineEnd), iar urmatoarea incepe dupa mNext
+	private int mLimit;
+	private int mLineStart, mLineEnd, mNext;
+	private int mTokenStart, mTokenEnd;
+
+	public ProtocolReader(InputStream in) {
+		mIn = in;
+	}
+
+	public static byte[] bytes(String word) {
+		return word.getBytes(StandardCharsets.US_ASCII);
+	}
+
+	/**
+	 * Trec la linia urmatoare, citind din stream cat este nevoie.
+	 *
+	 * @return false la sfarsitul stream-ului
+	 */
+	public boolean nextLine() throws IOException {
+		int start = mNext;
+		int scan = start;
+
+		while (true) {
+			while (scan < mLimit && mBuffer[scan] != '\n')
+				scan++;
+			if (scan < mLimit)
+				break;
+
+			// linia nu este completa: o mut la inceputul buffer-ului, il
+			// maresc daca este plin, si citesc in continuare
+			if (start > 0) {
+				System.arraycopy(mBuffer, start, mBuffer, 0, mLimit - start);
+				mLimit -= start;
+				scan -= start;
+				start = 0;
+			}
+			if (mLimit == mBuffer.length)
+				mBuffer = java.util.Arrays.copyOf(mBuffer, mBuffer.length * 2);
+
+			int read = mIn.read(mBuffer, mLimit, mBuffer.length - mLimit);
+			if (read < 0) {
+				// ultima linie, fara '\n' la final
+				if (scan == start)
+					return false;
+				break;
+			}
+			mLimit += read;
+		}
+
+		mLineStart = start;
+		mLineEnd = scan;
+		mNext = Math.min(scan + 1, mLimit);
+		if (mLineEnd > mLineStart && mBuffer[mLineEnd - 1] == '\r')
+			mLineEnd--;
+		mTokenEnd = mLineStart;
+		return true;
+	}
+
+	/**
+	 * Trec la urmatorul cuvant din linie.
+	 *
+	 * @return false daca linia nu mai are cuvinte
+	 */
+	public boolean nextToken() {
+		int i = mTokenEnd;
+		while (i < mLineEnd && mBuffer[i] == ' ')
+			i++;
+		if (i == mLineEnd)
+			return false;
+
+		mTokenStart = i;
+		while (i < mLineEnd && mBuffer[i] != ' ')
+			i++;
+		mTokenEnd = i;
+		return true;
+	}
+
+	public boolean tokenIs(byte[] word) {
+		if (mTokenEnd - mTokenStart != word.length)
+			return false;
+		for (int i = 0; i < word.length; i++) {
+			if (mBuffer[mTokenStart + i] != word[i])
+				return false;
+		}
+		return true;
+	}
+
+	public int tokenInt() {
+		int i = mTokenStart, sign = 1, value = 0;
+		if (i < mTokenEnd && mBuffer[i] == '-') {
+			sign = -1;
+			i++;
+		}
+		if (i == mTokenEnd)
+			throw new NumberFormatException("Expected a number");
+		for (; i < mTokenEnd; i++) {
+			int digit = mBuffer[i] - '0';
+			if (digit < 0 || digit > 9)
+				throw new NumberFormatException("Expected a number");
+			value = value * 10 + digit;
+		}
+		return sign * value;
+	}
+
+	public byte[] buffer() {
+		return mBuffer;
+	}
+
+	public int tokenStart() {
+		return mTokenStart;
+	}
+
+	public int tokenEnd() {
+		return mTokenEnd;
+	}
+}
@@ -0,0 +1,70 @@
+// // Copyright 2016 theaigames.com (developers@theaigames.com)
+
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+
+//        http://www.apache.org/licenses/LICENSE-2.0
+
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+//    For the full copyright and license information, please view the LICENSE
+//    file that was distributed with this source code.
+
+package bot;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * ProtocolWriter class
+ *
+ * Scriu raspunsurile catre engine printr-un buffer refolosit, cu un singur
+ * write si un flush pentru fiecare linie.
+ */
+
+public class ProtocolWriter {
+	private static final byte[] PLACE_MOVE = ProtocolReader.bytes("place_move ");
+
+	private final OutputStream mOut;
+	private final byte[] mBuffer = new byte[256];
+
+	public ProtocolWriter(OutputStream out) {
+		mOut = out;
+	}
+
+	/**
+	 * place_move x y
+	 */
+	public void writeMove(int x, int y) throws IOException {
+		System.arraycopy(PLACE_MOVE, 0, mBuffer, 0, PLACE_MOVE.length);
+		int length = PLACE_MOVE.length;
+		length = writeInt(x, length);
+		mBuffer[length++] = ' ';
+		length = writeInt(y, length);
+		mBuffer[length++] = '\n';
+		flush(length);
+	}
+
+	public void writeLine(byte[] line) throws IOException {
+		System.arraycopy(line, 0, mBuffer, 0, line.length);
+		mBuffer[line.length] = '\n';
+		flush(line.length + 1);
+	}
+
+	private int writeInt(int value, int at) {
+		if (value >= 10)
+			at = writeInt(value / 10, at);
+		mBuffer[at] = (byte) ('0' + value % 10);
+		return at + 1;
+	}
+
+	private void flush(int length) throws IOException {
+		mOut.write(mBuffer, 0, length);
+		mOut.flush();
+	}
+}
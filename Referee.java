@@ -0,0 +1,467 @@
+// // Copyright 2016 theaigames.com (developers@theaigames.com)
+
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+
+//        http://www.apache.org/licenses/LICENSE-2.0
+
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+//    For the full copyright and license information, please view the LICENSE
+//    file that was distributed with this source code.
+
+package bot;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Referee class
+ *
+ * Arbitru local: joaca multe partide intre doua configuratii ale bot-ului, in
+ * paralel, folosind acelasi protocol ca platforma. Fiecare bot ruleaza intr-un
+ * proces separat, pastrat de la o partida la alta. Partidele sunt jucate in
+ * perechi: aceeasi deschidere aleatoare, cu culorile inversate.
+ *
+ * La final afisez victoriile, egalurile si infrangerile bot-ului 1, diferenta
+ * de Elo cu intervalul de incredere de 95%, latenta mutarilor (p50, p99) si
+ * depasirile de timp.
+ *
+ * java -Dreferee.bot1="java -cp out -Dbot.engine=mcts bot.BotStarter"
+ * -Dreferee.games=1000 -cp out bot.Referee
+ *
+ * Setari (implicit intre paranteze): referee.bot1, referee.bot2 (bot-ul din
+ * classpath-ul curent; "tcp:port" pentru un Server pornit separat),
+ * referee.games (1000), referee.concurrency (numarul de procesoare),
+ * referee.timebank (10000), referee.timePerMove (500), referee.openingPlies
+ * (4), referee.seed, referee.positions, referee.records.
+ *
+ * Cu referee.positions=fisier scriu si fiecare pozitie din partide, cu
+ * rezultatul partidei, pentru Tune: field, macroboard si 1, 0.5 sau 0 din
+ * punctul de vedere al player-ului 1, separate prin spatii. Partidele
+ * terminate prin depasirea timpului sau o mutare ilegala nu sunt scrise.
+ * Cu referee.records=fisier scriu aceleasi partide in formatul binar din
+ * GameRecords.
+ */
+
+public class Referee {
+
+	// cat astept peste timpul din time bank inainte sa declar depasirea
+	private static final int GRACE_MILLIS = 100;
+
+	private final String[][] mCommands;
+	private final int mGames;
+	private final int mTimebank;
+	private final int mTimePerMove;
+	private final int mOpeningPlies;
+	private final long mSeed;
+
+	private final AtomicInteger mNextPair = new AtomicInteger();
+
+	// rezultatele din perspectiva bot-ului 1
+	private int mWins, mDraws, mLosses, mPlayed;
+	private final int[] mTimeouts = new int[2];
+	private final int[] mIllegal = new int[2];
+	private final Latencies[] mLatencies = new Latencies[] { new Latencies(), new Latencies() };
+
+	// pozitiile etichetate cu rezultatul si partidele in format binar, daca
+	// sunt cerute
+	private PrintStream mPositions;
+	private GameRecords.Writer mRecords;
+
+	public Referee(String[] bot1, String[] bot2, int games, int timebank, int timePerMove, int openingPlies,
+			long seed) {
+		mCommands = new String[][] { bot1, bot2 };
+		mGames = games;
+		mTimebank = timebank;
+		mTimePerMove = timePerMove;
+		mOpeningPlies = openingPlies;
+		mSeed = seed;
+	}
+
+	public void setPositions(PrintStream positions) {
+		mPositions = positions;
+	}
+
+	public void setRecords(GameRecords.Writer records) {
+		mRecords = records;
+	}
+
+	/**
+	 * Joc toate partidele pe concurrency thread-uri, fiecare cu propria
+	 * pereche de procese.
+	 */
+	public void run(int concurrency) throws InterruptedException {
+		ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+		for (int i = 0; i < concurrency; i++) {
+			workers.submit(this::work);
+		}
+		workers.shutdown();
+		workers.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+	}
+
+	private void work() {
+		BotProcess[] bots = new BotProcess[] { new BotProcess(mCommands[0]), new BotProcess(mCommands[1]) };
+		Field field = new Field();
+		int[] game = new int[81];
+
+		try {
+			for (int pair = mNextPair.getAndIncrement(); pair * 2 < mGames; pair = mNextPair.getAndIncrement()) {
+				for (int swap = 0; swap < 2 && pair * 2 + swap < mGames; swap++) {
+					playOpening(field, mSeed + pair, game);
+					int winner = play(field, bots, swap, game);
+					record(winner, swap);
+					if (mPositions != null && field.checkmMacroBoardForVictory() != 0)
+						writePositions(game, 81 - field.getEmptyCells(), winner);
+					if (mRecords != null && field.checkmMacroBoardForVictory() != 0)
+						mRecords.add(game, 81 - field.getEmptyCells(), GameRecords.resultOf(field));
+				}
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+		} finally {
+			bots[0].close();
+			bots[1].close();
+		}
+	}
+
+	/**
+	 * Deschiderea aleatoare, aceeasi pentru ambele partide din pereche.
+	 * Mutarile sunt retinute in game, dupa numarul mutarii.
+	 */
+	private void playOpening(Field field, long seed, int[] game) {
+		Random random = new Random(seed);
+		int[] moves = new int[81];
+		field.clearBoard();
+		for (int ply = 0; ply < mOpeningPlies && field.checkmMacroBoardForVictory() == 0; ply++) {
+			int count = field.generateMoves(moves);
+			game[ply] = Move.cell(moves[random.nextInt(count)]);
+			field.setMove(game[ply], ply % 2 + 1);
+		}
+	}
+
+	/**
+	 * Refac partida si scriu fiecare pozitie de dinainte de final cu
+	 * rezultatul ei.
+	 */
+	private void writePositions(int[] game, int length, int winner) {
+		String result = winner == 1 ? "1" : winner == 2 ? "0" : "0.5";
+		Field field = new Field();
+		StringBuilder lines = new StringBuilder();
+		for (int ply = 0; ply < length; ply++) {
+			lines.append(field).append(' ').append(macroboard(field)).append(' ').append(result).append('\n');
+			field.setMove(game[ply], ply % 2 + 1);
+		}
+		synchronized (mPositions) {
+			mPositions.print(lines);
+		}
+	}
+
+	/**
+	 * Joc o partida din pozitia data.
+	 *
+	 * @param swap
+	 *            - 0 daca bot-ul 1 este player 1, 1 daca este player 2
+	 * @param game
+	 *            - mutarile partidei, completate dupa deschidere
+	 * @return player-ul castigator sau -3 pentru egal
+	 */
+	private int play(Field field, BotProcess[] bots, int swap, int[] game) throws IOException {
+		int[] timebank = new int[] { mTimebank, mTimebank };
+		for (int player = 1; player <= 2; player++) {
+			BotProcess bot = bots[(player - 1) ^ swap];
+			bot.ensureStarted();
+			bot.send("settings timebank " + mTimebank);
+			bot.send("settings time_per_move " + mTimePerMove);
+			bot.send("settings your_botid " + player);
+		}
+
+		int moveNr = 81 - field.getEmptyCells();
+		int player = moveNr % 2 + 1;
+		while (field.checkmMacroBoardForVictory() == 0) {
+			int index = (player - 1) ^ swap;
+			BotProcess bot = bots[index];
+			int timeLeft = timebank[player - 1];
+
+			bot.send("update game round " + (moveNr / 2 + 1));
+			bot.send("update game move " + (moveNr + 1));
+			bot.send("update game field " + field);
+			bot.send("update game macroboard " + macroboard(field));
+			long start = System.nanoTime();
+			bot.send("action move " + timeLeft);
+			String line = bot.readMove(timeLeft + GRACE_MILLIS);
+			int elapsed = (int) ((System.nanoTime() - start) / 1000000L);
+
+			if (line == null || elapsed > timeLeft) {
+				synchronized (this) {
+					mTimeouts[index]++;
+				}
+				bot.restart();
+				return player % 2 + 1;
+			}
+			mLatencies[index].add(elapsed);
+
+			int cell = parseMove(line);
+			if (cell < 0 || (field.getMacroActive() & (1 << Field.CELL_BOARD[cell])) == 0
+					|| field.getPlayerId(Field.cellX(cell), Field.cellY(cell)) != 0) {
+				synchronized (this) {
+					mIllegal[index]++;
+				}
+				return player % 2 + 1;
+			}
+
+			field.setMove(cell, player);
+			game[moveNr] = cell;
+			timebank[player - 1] = Math.min(mTimebank, timeLeft - elapsed + mTimePerMove);
+			player = player % 2 + 1;
+			moveNr++;
+		}
+
+		return field.checkmMacroBoardForVictory();
+	}
+
+	private static String macroboard(Field field) {
+		StringBuilder s = new StringBuilder();
+		for (int board = 0; board < 9; board++) {
+			if (board > 0)
+				s.append(',');
+			s.append(field.getPlayerIdFromMacro(board % 3, board / 3));
+		}
+		return s.toString();
+	}
+
+	/**
+	 * "place_move x y" -> celula, sau -1 daca linia nu este o mutare.
+	 */
+	private static int parseMove(String line) {
+		String[] parts = line.trim().split(" ");
+		try {
+			int x = Integer.parseInt(parts[1]), y = Integer.parseInt(parts[2]);
+			return x >= 0 && x < 9 && y >= 0 && y < 9 ? Field.toCell(x, y) : -1;
+		} catch (RuntimeException e) {
+			return -1;
+		}
+	}
+
+	private synchronized void record(int winner, int swap) {
+		int bot1 = 1 + swap;
+		if (winner == bot1)
+			mWins++;
+		else if (winner == -3)
+			mDraws++;
+		else
+			mLosses++;
+
+		if (++mPlayed % 100 == 0)
+			System.err.println(mPlayed + "/" + mGames + " +" + mWins + " =" + mDraws + " -" + mLosses);
+	}
+
+	public synchronized void report(PrintStream out) {
+		int games = mWins + mDraws + mLosses;
+		out.println("games " + games + " bot1 wins " + mWins + " draws " + mDraws + " losses " + mLosses);
+
+		if (games > 0) {
+			double score = (mWins + mDraws / 2.0) / games;
+			double variance = (mWins * sq(1 - score) + mDraws * sq(0.5 - score) + mLosses * sq(score)) / games;
+			double margin = 1.96 * Math.sqrt(variance / games);
+			double elo = elo(score);
+			double error = (elo(score + margin) - elo(score - margin)) / 2;
+			out.printf("score %.1f%% elo %+.1f +/- %.1f (95%%)%n", score * 100, elo, error);
+		}
+
+		for (int i = 0; i < 2; i++) {
+			out.println("bot" + (i + 1) + " moves " + mLatencies[i].size() + " p50 " + mLatencies[i].percentile(50)
+					+ " ms p99 " + mLatencies[i].percentile(99) + " ms timeouts " + mTimeouts[i] + " illegal "
+					+ mIllegal[i]);
+		}
+	}
+
+	private static double sq(double x) {
+		return x * x;
+	}
+
+	/**
+	 * Diferenta de Elo pentru un scor mediu; scorurile de 0 si 1 sunt
+	 * limitate ca sa nu dea infinit.
+	 */
+	private static double elo(double score) {
+		score = Math.max(1e-6, Math.min(1 - 1e-6, score));
+		return -400 * Math.log10(1 / score - 1);
+	}
+
+	/**
+	 * Latentele mutarilor unui bot, adunate din toate thread-urile.
+	 */
+	private static class Latencies {
+		private int[] mValues = new int[1024];
+		private int mSize;
+
+		synchronized void add(int millis) {
+			if (mSize == mValues.length)
+				mValues = Arrays.copyOf(mValues, mSize * 2);
+			mValues[mSize++] = millis;
+		}
+
+		synchronized int size() {
+			return mSize;
+		}
+
+		synchronized int percentile(int p) {
+			if (mSize == 0)
+				return 0;
+			int[] sorted = Arrays.copyOf(mValues, mSize);
+			Arrays.sort(sorted);
+			return sorted[Math.min(mSize - 1, (int) ((long) mSize * p / 100))];
+		}
+	}
+
+	/**
+	 * Un bot pornit ca proces separat sau, pentru comanda "tcp:port", o
+	 * conexiune la un Server local. Liniile de la bot sunt citite pe un
+	 * thread separat, ca sa pot astepta o mutare cu timeout.
+	 */
+	private static class BotProcess {
+		private final String[] mCommand;
+		private Process mProcess;
+		private Socket mSocket;
+		private PrintStream mInput;
+		private BlockingQueue<String> mLines;
+
+		BotProcess(String[] command) {
+			mCommand = command;
+		}
+
+		void ensureStarted() throws IOException {
+			if ((mProcess != null && mProcess.isAlive()) || (mSocket != null && !mSocket.isClosed()))
+				return;
+
+			InputStream output;
+			if (mCommand[0].startsWith("tcp:")) {
+				mSocket = new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(mCommand[0].substring(4)));
+				mSocket.setTcpNoDelay(true);
+				mInput = new PrintStream(mSocket.getOutputStream(), true);
+				output = mSocket.getInputStream();
+			} else {
+				ProcessBuilder builder = new ProcessBuilder(mCommand);
+				builder.redirectError(ProcessBuilder.Redirect.DISCARD);
+				mProcess = builder.start();
+				mInput = new PrintStream(mProcess.getOutputStream(), true);
+				output = mProcess.getInputStream();
+			}
+
+			BlockingQueue<String> lines = new LinkedBlockingQueue<String>();
+			BufferedReader reader = new BufferedReader(new InputStreamReader(output));
+			Thread thread = new Thread(() -> {
+				try {
+					for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+						lines.add(line);
+					}
+				} catch (IOException e) {
+					// procesul sau conexiunea au fost oprite
+				}
+			}, "referee-reader");
+			thread.setDaemon(true);
+			thread.start();
+			mLines = lines;
+		}
+
+		void send(String line) {
+			mInput.println(line);
+		}
+
+		/**
+		 * Astept linia cu mutarea; ignor orice altceva scrie bot-ul.
+		 *
+		 * @return linia sau null daca nu a venit la timp
+		 */
+		String readMove(long timeoutMillis) {
+			long deadline = System.nanoTime() + timeoutMillis * 1000000L;
+			try {
+				while (true) {
+					long left = deadline - System.nanoTime();
+					String line = left > 0 ? mLines.poll(left, TimeUnit.NANOSECONDS) : null;
+					if (line == null || line.startsWith("place_move"))
+						return line;
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return null;
+			}
+		}
+
+		/**
+		 * Dupa o depasire de timp raspunsul ar veni in partida urmatoare, asa
+		 * ca pornesc alt proces.
+		 */
+		void restart() throws IOException {
+			close();
+			ensureStarted();
+		}
+
+		void close() {
+			if (mProcess != null) {
+				mProcess.destroyForcibly();
+				mProcess = null;
+			}
+			if (mSocket != null) {
+				try {
+					mSocket.close();
+				} catch (IOException e) {
+					// oricum nu o mai folosesc
+				}
+				mSocket = null;
+			}
+		}
+	}
+
+	private static String[] command(String property) {
+		String command = System.getProperty(property);
+		if (command != null)
+			return command.trim().split("\\s+");
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		return new String[] { java, "-cp", System.getProperty("java.class.path"), "bot.BotStarter" };
+	}
+
+	public static void main(String[] args) throws InterruptedException, IOException {
+		Referee referee = new Referee(command("referee.bot1"), command("referee.bot2"),
+				Integer.getInteger("referee.games", 1000), Integer.getInteger("referee.timebank", 10000),
+				Integer.getInteger("referee.timePerMove", 500), Integer.getInteger("referee.openingPlies", 4),
+				Long.getLong("referee.seed", System.nanoTime()));
+		String positions = System.getProperty("referee.positions");
+		if (positions != null)
+			referee.setPositions(new PrintStream(new BufferedOutputStream(new FileOutputStream(positions)), false));
+		String records = System.getProperty("referee.records");
+		if (records != null)
+			referee.setRecords(new GameRecords.Writer(records));
+
+		long start = System.nanoTime();
+		referee.run(Integer.getInteger("referee.concurrency", Runtime.getRuntime().availableProcessors()));
+		referee.report(System.out);
+		System.out.println("time " + (System.nanoTime() - start) / 1000000000L + " s");
+		if (positions != null)
+			referee.mPositions.close();
+		if (records != null)
+			referee.mRecords.close();
+	}
+}
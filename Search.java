@@ -0,0 +1,842 @@
+// // Copyright 2016 theaigames.com (developers@theaigames.com)
+
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+
+//        http://www.apache.org/licenses/LICENSE-2.0
+
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+//    For the full copyright and license information, please view the LICENSE
+//    file that was distributed with this source code.
+
+package bot;
+
+/**
+ * Search class
+ *
+ * Starea unei cautari: copia pozitiei, buffer-ele de mutari, contorul de
+ * noduri si rezultatul ultimei iteratii terminate. Fiecare thread are propriul
+ * Search; singurul lucru comun este tabela de transpozitii (Lazy SMP).
+ */
+
+public class Search {
+	private final int maxScore = 123456789;
+	private final int minScore = -123456789;
+
+	// in afara oricarui scor, ca sa poata fi negat fara overflow
+	private static final int INFINITY = 123456790;
+
+	// cum caut o iteratie: alpha-beta cu toata fereastra, PVS, PVS cu
+	// fereastra de aspiratie la radacina, sau MTD(f)
+	public static final int ALPHA_BETA = 0, PVS = 1, ASPIRATION = 2, MTDF = 3;
+
+	// fereastra de aspiratie initiala, in jurul scorului iteratiei anterioare
+	private static final int ASPIRATION_WINDOW = 100;
+
+	// implicit: cate extensii pot fi pe un drum si cate niveluri are
+	// cautarea de linistire
+	public static final int MAX_EXTENSIONS = 4, QUIESCENCE_DEPTH = 6;
+
+	// implicit: dupa cate mutari incep reducerile (LMR) si marja de futility
+	// pentru fiecare nivel ramas
+	public static final int LMR_MOVES = 3, FUTILITY_MARGIN = 120;
+
+	// adancimea minima pentru LMR si cea maxima pentru futility
+	private static final int LMR_DEPTH = 3, FUTILITY_DEPTH = 3;
+
+	// pana la cate celule ocupate folosesc cheile canonice; mai tarziu
+	// pozitiile simetrice sunt rare si nu merita actualizarea celor 8
+	// hash-uri la fiecare mutare
+	private static final int CANONICAL_STONES = 2;
+
+	// cu cate niveluri reduc a i-a mutare la adancimea d, crescator cu
+	// amandoua, ca in nodurile late (mutare libera) sa reduc mai mult
+	private static final int[][] REDUCTIONS = new int[64][81];
+
+	static {
+		for (int depth = 1; depth < 64; depth++) {
+			for (int i = 1; i < 81; i++)
+				REDUCTIONS[depth][i] = Math.max(1, (int) (Math.log(depth) * Math.log(i) / 2));
+		}
+	}
+
+	// buffer-e pentru mutari, cate unul pentru fiecare nivel din cautare
+	private final int[][] mMoves = new int[82][81];
+	private int mBestCell, mRootMove;
+
+	// simetriile care lasa radacina neschimbata (vezi Field.getSymmetries) si
+	// daca tabela este indexata dupa hash-ul canonic
+	private int mRootSymmetries;
+	private boolean mCanonical;
+
+	// pozitia proprie a thread-ului si player-ul pentru care caut
+	private final Field mField = new Field();
+	private int mPlayer;
+
+	private final int mId;
+	private final TranspositionTable mTable;
+
+	private long mDeadline;
+	private long mNodes, mNodeLimit;
+	private volatile boolean mStop;
+
+	// rezultatul ultimei iteratii terminate complet
+	private int mCompletedDepth, mCompletedScore, mCompletedCell;
+
+	private int mMode = PVS;
+
+	// cautarea selectiva: extensiile de pe drumul curent, limita lor si
+	// adancimea cautarii de linistire (0 le dezactiveaza)
+	private int mExtended;
+	private int mMaxExtensions = MAX_EXTENSIONS, mQuiescenceDepth = QUIESCENCE_DEPTH;
+
+	// reducerile si pruning-ul: de la a cata mutare reduc si marja de
+	// futility (0 le dezactiveaza)
+	private int mLmrMoves = LMR_MOVES, mFutilityMargin = FUTILITY_MARGIN;
+
+	// ordonarea mutarilor: doua mutari killer pentru fiecare nivel si
+	// istoricul mutarilor care au produs cutoff, dupa celula si dupa
+	// patratul catre care trimit oponentul
+	private final int[][] mKillers = new int[82][2];
+	private final int[][] mHistory = new int[2][81];
+	private final int[][] mSendHistory = new int[2][9];
+
+	// cate cutoff-uri au fost si cate au venit de la prima mutare incercata
+	private long mCutoffs, mFirstMoveCutoffs;
+
+	// pentru telemetrie: cautarile in tabela si cate au gasit pozitia
+	private long mTableProbes, mTableHits;
+
+	// scorurile de ordonare, puse in bitii de sus ai mutarii
+	private static final int HASH_MOVE = 1 << 22, WINNING_MOVE = 1 << 21, KILLER_MOVE = 1 << 20;
+	private static final int MAX_HISTORY = 1 << 18;
+
+	/**
+	 * @param table
+	 *            - tabela de transpozitii, comuna tuturor thread-urilor
+	 * @param id
+	 *            - 0 pentru thread-ul principal, 1.. pentru helperi
+	 */
+	public Search(TranspositionTable table, int id) {
+		mTable = table;
+		mId = id;
+	}
+
+	/**
+	 * Negamax cu alpha-beta, fail-soft: scorul este mereu din punctul de
+	 * vedere al player-ului care muta. Returneaza doar scorul; mutarea cea mai
+	 * buna de la radacina este retinuta in mBestCell. Mutarile sunt generate
+	 * in buffer-ele preallocate pentru fiecare nivel, ca sa nu aloc nimic.
+	 *
+	 * In modurile PVS, prima mutare este cautata cu toata fereastra, iar
+	 * restul cu o fereastra nula; doar daca una dintre ele trece de alpha o
+	 * caut din nou cu toata fereastra.
+	 *
+	 * Mutarile linistite de dupa primele mLmrMoves sunt cautate intai cu
+	 * adancime redusa; daca trec de alpha, le caut din nou normal. Aproape
+	 * de frunze, in afara variantei principale, pozitiile mult peste beta
+	 * sunt taiate direct (reverse futility), iar daca evaluarea plus marja
+	 * nu ajunge la alpha, sar peste mutarile linistite (futility). Nimic din
+	 * acestea nu se face cand oponentul poate castiga jocul cu o mutare.
+	 */
+	private int negamax(Field field, int player, int depth, int ply, int alpha, int beta) {
+
+		// Verific daca este victorie, infrangere sau egal in MacroBoard
+		// patratele castigate sunt marcate deja de setMove
+		int macroScore = field.checkmMacroBoardForVictory();
+
+		// daca este egal
+		if (macroScore == -3) {
+			return 0;
+
+		// jocul se termina doar dupa mutarea oponentului, deci el a castigat;
+		// adun distanta de la radacina, ca sa prefer victoriile mai rapide (si
+		// infrangerile mai lente)
+		} else if (macroScore != 0) {
+			return minScore + ply;
+
+		// daca nu este niciuna de mai sus si am ajuns la final, continui
+		// doar cu mutarile tactice
+		} else if (depth == 0) {
+			return quiesce(field, player, ply, alpha, beta, mQuiescenceDepth);
+		}
+
+		// verific din cand in cand daca a expirat timpul
+		if ((++mNodes & 1023) == 0 && (System.nanoTime() >= mDeadline || mNodes >= mNodeLimit)) {
+			mStop = true;
+		}
+		if (mStop) {
+			return 0;
+		}
+
+		// caut pozitia in tabela de transpozitii; la inceputul jocului dupa
+		// hash-ul canonic, ca pozitiile simetrice sa imparta intrarea, iar
+		// mutarea din tabela este retinuta in pozitia canonica. Cheia simpla a
+		// unei pozitii este egala cu cea canonica doar daca pozitia este
+		// canonica, asa ca intrarile din cele doua faze nu se amesteca
+		int symmetry = mCanonical ? field.getCanonicalSymmetry() : 0;
+		long hash = field.getHash(symmetry);
+		long entry = mTable.probe(hash);
+		int firstMove = ply == 0 ? mRootMove : TranspositionTable.NO_MOVE;
+		if (Telemetry.ENABLED) {
+			mTableProbes++;
+			if (entry != 0)
+				mTableHits++;
+		}
+
+		if (entry != 0) {
+			if (ply > 0 && TranspositionTable.depth(entry) >= depth) {
+				int score = fromTable(TranspositionTable.score(entry), ply);
+				int bound = TranspositionTable.bound(entry);
+
+				if (bound == TranspositionTable.EXACT
+						|| (bound == TranspositionTable.LOWER && score >= beta)
+						|| (bound == TranspositionTable.UPPER && score <= alpha)) {
+					return score;
+				}
+			}
+			// mutarea din tabela este in pozitia canonica, o aduc inapoi
+			if (ply > 0) {
+				firstMove = TranspositionTable.move(entry);
+				if (firstMove != TranspositionTable.NO_MOVE)
+					firstMove = Symmetry.INVERSE[symmetry][firstMove];
+			}
+		}
+
+		int other = player % 2 + 1;
+		boolean pv = beta - alpha > 1;
+		boolean calm = !threatensGame(field, other, Field.FULL);
+		boolean safe = calm && ply > 0 && !isMate(alpha) && !isMate(beta);
+
+		// aproape de frunze, evaluarea ajunge ca sa decid daca pozitia este
+		// prea buna ca oponentul sa o permita sau prea slaba ca sa mai conteze
+		boolean futile = false;
+		int futileScore = -INFINITY;
+		if (safe && !pv && mFutilityMargin > 0 && depth <= FUTILITY_DEPTH) {
+			int eval = field.evaluate(player);
+			if (eval - mFutilityMargin * depth >= beta)
+				return eval;
+			futileScore = eval + mFutilityMargin * depth;
+			futile = futileScore <= alpha;
+		}
+
+		int[] moves = mMoves[ply];
+		int count = field.generateMoves(moves);
+		if (ply == 0)
+			count = removeSymmetricMoves(moves, count, mRootSymmetries);
+		scoreMoves(field, moves, count, player, ply, firstMove);
+
+		int alphaOrig = alpha;
+		int best = -INFINITY, bestCell = TranspositionTable.NO_MOVE;
+
+		int won = field.getMacroWon(player);
+		int open = Field.FULL & ~(won | field.getMacroWon(other) | field.getMacroDrawn());
+
+		for (int i = 0; i < count; i++) {
+			int move = nextMove(moves, i, count);
+			int cell = Move.cell(move);
+			int board = Field.CELL_BOARD[cell];
+			boolean quiet = Move.score(move) < KILLER_MOVE;
+
+			// o mutare care castiga un patrat si imi da o amenintare noua in
+			// MacroBoard il obliga pe oponent sa raspunda, asa ca nu o las sa
+			// se termine la orizont
+			int extension = 0;
+			if (mExtended < mMaxExtensions && (field.getThreats(player, board) & (1 << Field.CELL_BIT[cell])) != 0
+					&& createsMacroThreat(won, open, board))
+				extension = 1;
+
+			// o mutare sarita poate avea cel mult evaluarea plus marja; scorul
+			// fail-soft nu trebuie sa fie sub ea, altfel limita din tabela
+			// este prea mica
+			if (futile && i > 0 && quiet && extension == 0) {
+				best = Math.max(best, futileScore);
+				continue;
+			}
+			mExtended += extension;
+
+			// setez mutarea in mBoard
+			field.setMove(cell, player);
+
+			// calculez scorul mutarii, apeland recursiv pe celalalt player
+			int score;
+			int newDepth = depth - 1 + extension;
+			if (i == 0) {
+				score = -negamax(field, other, newDepth, ply + 1, -beta, -alpha);
+			} else {
+
+				// o mutare tarzie si linistita este cautata intai redus, cu
+				// fereastra nula
+				score = alpha + 1;
+				if (mLmrMoves > 0 && i >= mLmrMoves && depth >= LMR_DEPTH && quiet && extension == 0 && calm) {
+					int reduction = Math.min(REDUCTIONS[Math.min(depth, 63)][i], newDepth - 1);
+					score = -negamax(field, other, newDepth - reduction, ply + 1, -alpha - 1, -alpha);
+				}
+
+				if (mMode == ALPHA_BETA) {
+					if (score > alpha && !mStop)
+						score = -negamax(field, other, newDepth, ply + 1, -beta, -alpha);
+				} else {
+					if (score > alpha && !mStop)
+						score = -negamax(field, other, newDepth, ply + 1, -alpha - 1, -alpha);
+					if (score > alpha && score < beta && !mStop)
+						score = -negamax(field, other, newDepth, ply + 1, -beta, -alpha);
+				}
+			}
+
+			mExtended -= extension;
+
+			// fac unMove la mutare
+			field.unMove();
+
+			if (mStop) {
+				return 0;
+			}
+
+			if (score > best) {
+				best = score;
+				bestCell = cell;
+			}
+			if (score > alpha) {
+				alpha = score;
+			}
+
+			// intrerup cautarea, deoarece nu mai are cum sa influenteze
+			// rezultatul
+			if (alpha >= beta) {
+				mCutoffs++;
+				if (i == 0)
+					mFirstMoveCutoffs++;
+				if (Move.score(moves[i]) < WINNING_MOVE)
+					updateOrdering(player, cell, depth, ply);
+				break;
+			}
+		}
+
+		if (ply == 0)
+			mBestCell = bestCell;
+
+		// salvez in tabela ce fel de scor este
+		int bound = best <= alphaOrig ? TranspositionTable.UPPER
+				: best >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+		mTable.store(hash, toTable(best, ply), bound, depth,
+				bestCell == TranspositionTable.NO_MOVE ? bestCell : Symmetry.CELLS[symmetry][bestCell]);
+
+		return best;
+
+	}
+
+	/**
+	 * Cautarea de linistire, la orizont. Daca player-ul poate castiga jocul
+	 * la mutarea urmatoare, pozitia este castigata. Altfel, in loc sa evaluez
+	 * direct, caut doar mutarile care castiga un patrat si ii dau o amenintare
+	 * in MacroBoard, pana cand pozitia este linistita sau se termina depth
+	 * niveluri. Player-ul poate alege si sa nu le joace (stand pat), cu scorul
+	 * din evaluate.
+	 *
+	 * Stand pat nu este corect daca oponentul amenita sa castige jocul: un
+	 * patrat in care are o amenintare si care i-ar completa o secventa in
+	 * MacroBoard. Atunci, la primul nivel, caut toate mutarile, ca sa vad daca
+	 * pot evita sa il trimit acolo.
+	 */
+	private int quiesce(Field field, int player, int ply, int alpha, int beta, int depth) {
+		int macroScore = field.checkmMacroBoardForVictory();
+		if (macroScore == -3) {
+			return 0;
+		} else if (macroScore != 0) {
+			return minScore + ply;
+		}
+
+		int other = player % 2 + 1;
+		int active = field.getMacroActive(), won = field.getMacroWon(player);
+		int open = Field.FULL & ~(won | field.getMacroWon(other) | field.getMacroDrawn());
+
+		if (mQuiescenceDepth > 0 && threatensGame(field, player, active))
+			return maxScore - ply - 1;
+
+		int standPat = field.evaluate(player);
+		if (depth == 0)
+			return standPat;
+
+		if ((++mNodes & 1023) == 0 && (System.nanoTime() >= mDeadline || mNodes >= mNodeLimit)) {
+			mStop = true;
+		}
+		if (mStop) {
+			return 0;
+		}
+
+		boolean threatened = depth == mQuiescenceDepth && threatensGame(field, other, Field.FULL);
+
+		int best = -INFINITY;
+		if (!threatened) {
+			if (standPat >= beta)
+				return standPat;
+			best = standPat;
+			if (standPat > alpha)
+				alpha = standPat;
+		}
+
+		int[] moves = mMoves[ply];
+		int count = 0;
+		if (threatened) {
+			count = field.generateMoves(moves);
+			for (int i = 0; i < count; i++) {
+				int cell = Move.cell(moves[i]);
+				int board = Field.CELL_BOARD[cell];
+				boolean wins = (field.getThreats(player, board) & (1 << Field.CELL_BIT[cell])) != 0;
+				moves[i] = Move.pack(cell, wins && createsMacroThreat(won, open, board) ? 1 : 0);
+			}
+		} else {
+			for (int board = 0; board < 9; board++) {
+				if ((active & (1 << board)) == 0 || !createsMacroThreat(won, open, board))
+					continue;
+				int threats = field.getThreats(player, board);
+				for (int bit = 0; threats != 0; bit++, threats >>>= 1) {
+					if ((threats & 1) != 0)
+						moves[count++] = Field.BOARD_CELLS[board][bit];
+				}
+			}
+		}
+
+		for (int i = 0; i < count; i++) {
+			int cell = Move.cell(nextMove(moves, i, count));
+
+			field.setMove(cell, player);
+			int score = -quiesce(field, other, ply + 1, -beta, -alpha, depth - 1);
+			field.unMove();
+
+			if (mStop) {
+				return 0;
+			}
+
+			if (score > best) {
+				best = score;
+			}
+			if (score > alpha) {
+				alpha = score;
+			}
+			if (alpha >= beta) {
+				break;
+			}
+		}
+
+		return best;
+	}
+
+	/**
+	 * Daca player-ul, mutand intr-unul din patratele boards, ar putea castiga
+	 * un patrat care ii completeaza o secventa in MacroBoard.
+	 */
+	private static boolean threatensGame(Field field, int player, int boards) {
+		int wins = boards & field.getMacroThreats(player);
+		for (int board = 0; wins != 0; board++, wins >>>= 1) {
+			if ((wins & 1) != 0 && field.getThreats(player, board) != 0)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Daca, castigand patratul board, player-ul ar avea doua patrate dintr-o
+	 * secventa a MacroBoard-ului, iar al treilea ar fi inca deschis.
+	 */
+	private static boolean createsMacroThreat(int won, int open, int board) {
+		for (int line : Field.BIT_LINES[board]) {
+			int rest = Field.LINES[line] & ~(1 << board);
+			if ((rest & won) != 0 && (rest & open) != 0)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Din mutarile pe care o simetrie a pozitiei le duce una in alta o pastrez
+	 * doar pe cea cu celula cea mai mica; celelalte au acelasi scor. Conteaza
+	 * mai ales la inceputul jocului, cand radacina are multe mutari
+	 * echivalente.
+	 *
+	 * @param symmetries
+	 *            - simetriile pozitiei, ca masca de biti
+	 * @return numarul de mutari ramase
+	 */
+	private static int removeSymmetricMoves(int[] moves, int count, int symmetries) {
+		if (symmetries == 0)
+			return count;
+
+		int kept = 0;
+		for (int i = 0; i < count; i++) {
+			int cell = Move.cell(moves[i]);
+			boolean smallest = true;
+			for (int s = 1; s < Symmetry.COUNT && smallest; s++) {
+				if ((symmetries & (1 << s)) != 0 && Symmetry.CELLS[s][cell] < cell)
+					smallest = false;
+			}
+			if (smallest)
+				moves[kept++] = moves[i];
+		}
+		return kept;
+	}
+
+	/**
+	 * Dau fiecarei mutari un scor de ordonare: intai mutarea din tabela (la
+	 * radacina, mutarea cea mai buna din iteratia anterioara), apoi mutarile
+	 * care castiga un patrat, apoi mutarile killer de pe acest nivel si la
+	 * final restul, dupa istoric.
+	 */
+	private void scoreMoves(Field field, int[] moves, int count, int player, int ply, int firstMove) {
+		int[] history = mHistory[player - 1], sendHistory = mSendHistory[player - 1];
+		int[] killers = mKillers[ply];
+
+		for (int i = 0; i < count; i++) {
+			int cell = Move.cell(moves[i]);
+			int score;
+
+			if (cell == firstMove) {
+				score = HASH_MOVE;
+			} else if ((field.getThreats(player, Field.CELL_BOARD[cell]) & (1 << Field.CELL_BIT[cell])) != 0) {
+				score = WINNING_MOVE;
+			} else if (cell == killers[0]) {
+				score = KILLER_MOVE + 1;
+			} else if (cell == killers[1]) {
+				score = KILLER_MOVE;
+			} else {
+				score = history[cell] + sendHistory[Field.CELL_BIT[cell]];
+			}
+
+			moves[i] = Move.pack(cell, score);
+		}
+	}
+
+	/**
+	 * Aduc pe pozitia i mutarea cu scorul cel mai mare dintre cele ramase.
+	 * Daca apare un cutoff devreme, restul mutarilor nu mai sunt sortate.
+	 */
+	private int nextMove(int[] moves, int i, int count) {
+		int best = i;
+		for (int j = i + 1; j < count; j++) {
+			if (moves[j] > moves[best])
+				best = j;
+		}
+
+		int move = moves[best];
+		moves[best] = moves[i];
+		moves[i] = move;
+		return move;
+	}
+
+	/**
+	 * O mutare linistita a produs cutoff: o retin ca killer pentru acest
+	 * nivel si ii cresc scorul din istoric.
+	 */
+	private void updateOrdering(int player, int cell, int depth, int ply) {
+		int[] killers = mKillers[ply];
+		if (killers[0] != cell) {
+			killers[1] = killers[0];
+			killers[0] = cell;
+		}
+
+		int[] history = mHistory[player - 1], sendHistory = mSendHistory[player - 1];
+		history[cell] += depth * depth;
+		sendHistory[Field.CELL_BIT[cell]] += depth * depth;
+
+		if (history[cell] > MAX_HISTORY || sendHistory[Field.CELL_BIT[cell]] > MAX_HISTORY)
+			ageHistory();
+	}
+
+	/**
+	 * Injumatatesc istoricul, ca mutarile vechi sa conteze mai putin.
+	 */
+	private void ageHistory() {
+		for (int p = 0; p < 2; p++) {
+			for (int cell = 0; cell < 81; cell++)
+				mHistory[p][cell] /= 2;
+			for (int board = 0; board < 9; board++)
+				mSendHistory[p][board] /= 2;
+		}
+	}
+
+	/**
+	 * Scorurile de victorie depind de distanta de la radacina. In tabela le
+	 * retin relativ la pozitia respectiva, ca sa fie valabile si cand pozitia
+	 * este atinsa la alt nivel sau in alta tura.
+	 */
+	private int toTable(int score, int ply) {
+		if (score > maxScore - 100)
+			return score + ply;
+		if (score < minScore + 100)
+			return score - ply;
+		return score;
+	}
+
+	private int fromTable(int score, int ply) {
+		if (score > maxScore - 100)
+			return score - ply;
+		if (score < minScore + 100)
+			return score + ply;
+		return score;
+	}
+
+	/**
+	 * Iterative deepening: caut cu adancimea 1, 2, 3... pana cand expira
+	 * timpul sau sunt oprit. Retin mutarea din ultima iteratie terminata
+	 * complet; o iteratie intrerupta este ignorata.
+	 *
+	 * Thread-ul principal se opreste cand nu mai are timp pentru o iteratie
+	 * noua. Helperii cauta pana la deadline sau pana cand sunt opriti; cei cu
+	 * id impar incep cu o adancime mai mare si fiecare incepe cu alta mutare
+	 * la radacina, ca sa nu caute toti acelasi subarbore in acelasi timp.
+	 *
+	 * Cand ponderez, caut pozitia in care muta oponentul, fara limita de timp,
+	 * pana sunt oprit. In tabela scorurile sunt din punctul de vedere al
+	 * player-ului care muta, asa ca intrarile pot fi folosite si in tura
+	 * urmatoare.
+	 *
+	 * @param player
+	 *            - player-ul care muta in pozitia data
+	 * @param perspective
+	 *            - player-ul din punctul de vedere al caruia raportez scorul
+	 *            (id-ul bot-ului)
+	 */
+	public void run(Field field, int player, int perspective, TimeManager timeManager, boolean ponder) {
+		prepare(field, perspective, ponder ? Long.MAX_VALUE : timeManager.getDeadline());
+		deepen(player, mField.getEmptyCells(), timeManager, ponder);
+	}
+
+	/**
+	 * Caut pana la o adancime fixa, fara limita de timp, pentru benchmark-uri
+	 * si analiza. Rezultatul este in getCompletedCell si getCompletedScore.
+	 */
+	public void runFixedDepth(Field field, int player, int perspective, int depth) {
+		mStop = false;
+		prepare(field, perspective, Long.MAX_VALUE);
+		deepen(player, Math.min(depth, mField.getEmptyCells()), null, false);
+	}
+
+	/**
+	 * Caut pana cand depasesc numarul de noduri dat, fara limita de timp.
+	 * Rezultatul este cel al ultimei iteratii terminate.
+	 */
+	public void runNodes(Field field, int player, int perspective, long nodes) {
+		mStop = false;
+		prepare(field, perspective, Long.MAX_VALUE);
+		mNodeLimit = nodes;
+		deepen(player, mField.getEmptyCells(), null, false);
+	}
+
+	private void prepare(Field field, int perspective, long deadline) {
+		mField.copyFrom(field);
+		mPlayer = perspective;
+		mDeadline = deadline;
+		mNodes = 0;
+		mNodeLimit = Long.MAX_VALUE;
+		mCutoffs = mFirstMoveCutoffs = 0;
+		mTableProbes = mTableHits = 0;
+		mCompletedDepth = 0;
+		mExtended = 0;
+		mRootSymmetries = mField.getSymmetries();
+		mCanonical = 81 - mField.getEmptyCells() <= CANONICAL_STONES;
+		mField.trackSymmetries(mCanonical);
+
+		// killer-ii de la tura trecuta sunt pe alte niveluri, iar istoricul
+		// il pastrez, dar conteaza mai putin
+		for (int[] killers : mKillers) {
+			killers[0] = killers[1] = TranspositionTable.NO_MOVE;
+		}
+		ageHistory();
+	}
+
+	/**
+	 * Bucla de iterative deepening; fara timeManager nu scriu log si nu ma
+	 * opresc decat la maxDepth.
+	 */
+	private void deepen(int player, int maxDepth, TimeManager timeManager, boolean ponder) {
+		boolean main = mId == 0 && !ponder && timeManager != null;
+
+		int[] rootMoves = mMoves[0];
+		int count = removeSymmetricMoves(rootMoves, mField.generateMoves(rootMoves), mRootSymmetries);
+		mCompletedCell = Move.cell(rootMoves[mId % count]);
+		mCompletedScore = 0;
+
+		int score = 0;
+		for (int depth = 1 + (mId & 1); depth <= maxDepth; depth++) {
+			mBestCell = -1;
+			mRootMove = mCompletedCell;
+			if (mMode == MTDF && depth > 1)
+				score = mtdf(player, depth, score);
+			else if (mMode == ASPIRATION && depth > 2 && !isMate(score))
+				score = aspiration(player, depth, score);
+			else
+				score = negamax(mField, player, depth, 0, -INFINITY, INFINITY);
+
+			if (mStop)
+				break;
+
+			mCompletedDepth = depth;
+			mCompletedScore = player == mPlayer ? score : -score;
+			mCompletedCell = mBestCell;
+			if (Telemetry.ENABLED && main) {
+				System.err.println("depth " + depth + " score " + mCompletedScore + " nodes " + mNodes + " time "
+						+ timeManager.getElapsedMillis() + " first move cutoffs " + getFirstMoveCutoffRate() + "%");
+			}
+
+			// daca am gasit o victorie sau o infrangere sigura, nu mai caut
+			if (isMate(score))
+				break;
+
+			if (main && !timeManager.canStartIteration())
+				break;
+		}
+	}
+
+	/**
+	 * Caut radacina intr-o fereastra ingusta in jurul scorului anterior. Daca
+	 * scorul iese din fereastra, o largesc in partea aceea si caut din nou;
+	 * dupa cateva incercari folosesc toata fereastra.
+	 */
+	private int aspiration(int player, int depth, int guess) {
+		int window = ASPIRATION_WINDOW;
+		int alpha = guess - window, beta = guess + window;
+
+		while (true) {
+			int score = negamax(mField, player, depth, 0, alpha, beta);
+			if (mStop || (score > alpha && score < beta))
+				return score;
+
+			window *= 4;
+			if (window > 1024) {
+				alpha = -INFINITY;
+				beta = INFINITY;
+			} else if (score <= alpha) {
+				alpha = Math.max(-INFINITY, score - window);
+			} else {
+				beta = Math.min(INFINITY, score + window);
+			}
+		}
+	}
+
+	/**
+	 * MTD(f): doar cautari cu fereastra nula, care strang marginile scorului
+	 * pornind de la scorul iteratiei anterioare, pana cand se intalnesc.
+	 * Mutarea este cea a ultimei cautari care a trecut de margine (fail
+	 * high), singura care a gasit o mutare cel putin atat de buna.
+	 */
+	private int mtdf(int player, int depth, int guess) {
+		int lower = -INFINITY, upper = INFINITY;
+		int score = guess, bestCell = -1;
+
+		while (lower < upper) {
+			int beta = score == lower ? score + 1 : score;
+			score = negamax(mField, player, depth, 0, beta - 1, beta);
+			if (mStop)
+				return 0;
+
+			// dupa un fail-low mutarea cea mai buna din radacina este doar cea
+			// cu limita superioara cea mai mare, asa ca nu o incerc prima
+			if (score < beta) {
+				upper = score;
+			} else {
+				lower = score;
+				bestCell = mBestCell;
+				mRootMove = mBestCell;
+			}
+		}
+
+		if (bestCell >= 0)
+			mBestCell = bestCell;
+		return score;
+	}
+
+	public void setMode(int mode) {
+		mMode = mode;
+	}
+
+	/**
+	 * @param maxExtensions
+	 *            - cate extensii pot fi pe un drum; 0 le dezactiveaza
+	 * @param quiescenceDepth
+	 *            - cate niveluri are cautarea de linistire; 0 evalueaza
+	 *            direct la orizont
+	 */
+	public void setSelectivity(int maxExtensions, int quiescenceDepth) {
+		mMaxExtensions = maxExtensions;
+		mQuiescenceDepth = quiescenceDepth;
+	}
+
+	/**
+	 * @param lmrMoves
+	 *            - de la a cata mutare (numarate de la 0) reduc mutarile
+	 *            linistite; 0 dezactiveaza reducerile
+	 * @param futilityMargin
+	 *            - marja de futility pentru fiecare nivel ramas; 0
+	 *            dezactiveaza futility si reverse futility
+	 */
+	public void setPruning(int lmrMoves, int futilityMargin) {
+		mLmrMoves = lmrMoves;
+		mFutilityMargin = futilityMargin;
+	}
+
+	/**
+	 * Opresc cautarea; este apelat din alt thread.
+	 */
+	public void stop() {
+		mStop = true;
+	}
+
+	/**
+	 * Sterg oprirea inainte de o cautare noua. Nu o fac in run, ca un stop
+	 * venit inainte ca thread-ul sa porneasca sa nu se piarda.
+	 */
+	public void clearStop() {
+		mStop = false;
+	}
+
+	public boolean isMate(int score) {
+		return score > maxScore - 100 || score < minScore + 100;
+	}
+
+	public int getCompletedDepth() {
+		return mCompletedDepth;
+	}
+
+	public int getCompletedScore() {
+		return mCompletedScore;
+	}
+
+	public int getCompletedCell() {
+		return mCompletedCell;
+	}
+
+	public long getNodes() {
+		return mNodes;
+	}
+
+	public long getCutoffs() {
+		return mCutoffs;
+	}
+
+	public long getFirstMoveCutoffs() {
+		return mFirstMoveCutoffs;
+	}
+
+	public long getTableProbes() {
+		return mTableProbes;
+	}
+
+	public long getTableHits() {
+		return mTableHits;
+	}
+
+	/**
+	 * Procentul de cutoff-uri produse de prima mutare incercata; cu cat este
+	 * mai mare, cu atat ordonarea mutarilor este mai buna.
+	 */
+	public long getFirstMoveCutoffRate() {
+		return mCutoffs == 0 ? 0 : mFirstMoveCutoffs * 100 / mCutoffs;
+	}
+}
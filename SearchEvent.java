@@ -0,0 +1,80 @@
+// // Copyright 2016 theaigames.com (developers@theaigames.com)
+
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+
+//        http://www.apache.org/licenses/LICENSE-2.0
+
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+//    For the full copyright and license information, please view the LICENSE
+//    file that was distributed with this source code.
+
+package bot;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Percentage;
+import jdk.jfr.Timespan;
+
+/**
+ * SearchEvent class
+ *
+ * Eveniment JFR cu statisticile cautarii pentru o mutare. Acelasi obiect este
+ * scris si ca linie JSON de Telemetry.
+ */
+
+@Name("bot.Search")
+@Label("Search")
+@Category("Bot")
+@Description("Statisticile cautarii pentru o mutare")
+public class SearchEvent extends Event {
+
+	@Label("Move")
+	@Description("Numarul mutarii in joc, de la 1")
+	public int move;
+
+	@Label("Engine")
+	@Description("book, first, forced, solver, minimax sau mcts")
+	public String engine;
+
+	@Label("Depth")
+	public int depth;
+
+	@Label("Score")
+	public int score;
+
+	@Label("Nodes")
+	public long nodes;
+
+	@Label("Nodes Per Second")
+	public long nodesPerSecond;
+
+	@Label("Branching Factor")
+	@Description("Factorul de ramificare efectiv, nodes^(1/depth)")
+	public double branchingFactor;
+
+	@Label("First Move Cutoffs")
+	@Percentage
+	public double firstMoveCutoffs;
+
+	@Label("Table Hit Rate")
+	@Percentage
+	public double tableHitRate;
+
+	@Label("Time Used")
+	@Timespan(Timespan.MILLISECONDS)
+	public long timeUsed;
+
+	@Label("Time Budget")
+	@Timespan(Timespan.MILLISECONDS)
+	public long timeBudget;
+}
@@ -0,0 +1,133 @@
+// // Copyright 2016 theaigames.com (developers@theaigames.com)
+
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+
+//        http://www.apache.org/licenses/LICENSE-2.0
+
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+//    For the full copyright and license information, please view the LICENSE
+//    file that was distributed with this source code.
+
+package bot;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Server class
+ *
+ * Mai multe meciuri in acelasi JVM: fiecare conexiune pe portul local este un
+ * meci, cu protocolul obisnuit, jucat de un BotStarter si un BotParser noi.
+ * Tabelele statice (Field, Weights, Symmetry), cartea de deschideri,
+ * ponderile din bot.weights si telemetria sunt comune; pozitia, tabela de
+ * transpozitii si cautarea sunt ale fiecarui meci.
+ *
+ * Fiecare meci ruleaza pe un virtual thread daca JVM-ul le are (Java 21+);
+ * altfel pe un thread obisnuit.
+ *
+ * java -Dbot.port=9090 -Dbot.hash=8 bot.Server
+ */
+
+public class Server {
+
+	// Thread.ofVirtual().factory() sau null daca JVM-ul nu are virtual threads
+	private static final ThreadFactory VIRTUAL = virtualThreadFactory();
+
+	private final ServerSocket mSocket;
+	private final OpeningBook mBook;
+	private final Weights mWeights;
+	private final Telemetry mTelemetry;
+	private final AtomicInteger mMatches = new AtomicInteger();
+
+	public Server(int port, OpeningBook book, Weights weights, Telemetry telemetry) throws IOException {
+		mSocket = new ServerSocket(port, 128, InetAddress.getLoopbackAddress());
+		mBook = book;
+		mWeights = weights;
+		mTelemetry = telemetry;
+	}
+
+	/**
+	 * Accept conexiuni pana cand socket-ul este inchis.
+	 */
+	public void run() throws IOException {
+		System.err.println("listening on " + mSocket.getLocalPort()
+				+ (VIRTUAL != null ? " with virtual threads" : " with platform threads"));
+		while (true) {
+			Socket socket = mSocket.accept();
+			socket.setTcpNoDelay(true);
+			threads("match").newThread(() -> play(socket)).start();
+		}
+	}
+
+	private void play(Socket socket) {
+		int match = mMatches.incrementAndGet();
+		BotStarter bot = BotStarter.fromProperties(8);
+		bot.setBook(mBook);
+		bot.setWeights(mWeights);
+		if (Telemetry.ENABLED)
+			bot.setTelemetry(mTelemetry);
+
+		try (Socket s = socket) {
+			BotParser parser = new BotParser(bot, s.getInputStream(), new BufferedOutputStream(s.getOutputStream()),
+					threads("engine-" + match));
+			parser.run();
+		} catch (IOException | RuntimeException e) {
+			System.err.println("match " + match + ": " + e);
+		} finally {
+			bot.shutdown();
+			mMatches.decrementAndGet();
+		}
+	}
+
+	public int getMatches() {
+		return mMatches.get();
+	}
+
+	/**
+	 * Thread-uri virtuale daca exista, altfel thread-uri daemon obisnuite.
+	 */
+	static ThreadFactory threads(String name) {
+		if (VIRTUAL != null)
+			return VIRTUAL;
+		return runnable -> {
+			Thread thread = new Thread(runnable, name);
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	/**
+	 * Proiectul se compileaza cu Java 17, asa ca ajung la virtual threads
+	 * prin reflection. Pe Java 19/20 fara --enable-preview ofVirtual arunca
+	 * UnsupportedOperationException si raman la thread-uri obisnuite.
+	 */
+	private static ThreadFactory virtualThreadFactory() {
+		try {
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			Method factory = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+			return (ThreadFactory) factory.invoke(builder);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return null;
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		Telemetry telemetry = Telemetry.ENABLED ? Telemetry.open(System.getProperty("bot.telemetry")) : null;
+		Server server = new Server(Integer.getInteger("bot.port", 9090), BotStarter.loadBook(),
+				BotStarter.loadWeights(), telemetry);
+		server.run();
+	}
+}
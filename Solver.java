@@ -0,0 +1,231 @@
+// // Copyright 2016 theaigames.com (developers@theaigames.com)
+
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+
+//        http://www.apache.org/licenses/LICENSE-2.0
+
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+//    For the full copyright and license information, please view the LICENSE
+//    file that was distributed with this source code.
+
+package bot;
+
+/**
+ * Solver class
+ *
+ * Rezolv exact pozitiile de final, fara evaluare: caut pana la sfarsitul
+ * jocului si aflu daca pozitia este castigata, egala sau pierduta, si in cate
+ * mutari. Scorul unei victorii este WIN minus numarul de mutari pana la ea,
+ * ca sa aleg victoria cea mai rapida si infrangerea cea mai lunga.
+ *
+ * Solver-ul are propria tabela de transpozitii, in care scorurile sunt exacte
+ * si nu se amesteca cu cele euristice din Search. Daca nu termina pana la
+ * deadline, solve returneaza false si rezultatul nu trebuie folosit.
+ */
+
+public class Solver {
+	public static final int WIN = 1000;
+
+	private final TranspositionTable mTable;
+	private final Field mField = new Field();
+	private final int[][] mMoves = new int[82][81];
+
+	private long mDeadline;
+	private long mNodes;
+	private boolean mStop;
+	private int mBestCell, mScore;
+
+	// scorurile de ordonare
+	private static final int HASH_MOVE = 1 << 22, MACRO_WIN = 1 << 21, MICRO_WIN = 1 << 20;
+
+	/**
+	 * @param sizeMb
+	 *            - dimensiunea tabelei de transpozitii proprii, in MB
+	 */
+	public Solver(int sizeMb) {
+		mTable = new TranspositionTable(sizeMb);
+	}
+
+	/**
+	 * Celulele libere din patratele neterminate; doar acestea mai pot fi
+	 * jucate, deci dau marimea finalului.
+	 */
+	public static int liveCells(Field field) {
+		int done = field.getMacroWon(1) | field.getMacroWon(2) | field.getMacroDrawn();
+		int cells = 0;
+		for (int board = 0; board < 9; board++) {
+			if ((done & (1 << board)) == 0)
+				cells += 9 - Integer.bitCount(field.getBoardMask(1, board) | field.getBoardMask(2, board));
+		}
+		return cells;
+	}
+
+	/**
+	 * Rezolv pozitia pentru player-ul care muta.
+	 *
+	 * @return true daca am terminat inainte de deadline
+	 */
+	public boolean solve(Field field, int player, long deadline) {
+		mField.copyFrom(field);
+		mDeadline = deadline;
+		mNodes = 0;
+		mStop = false;
+		mBestCell = -1;
+		mTable.newSearch();
+
+		mScore = negamax(player, 0, -WIN, WIN);
+		return !mStop && mBestCell >= 0;
+	}
+
+	private int negamax(int player, int ply, int alpha, int beta) {
+		int result = mField.checkmMacroBoardForVictory();
+		if (result == -3)
+			return 0;
+		// jocul se termina doar dupa mutarea oponentului
+		if (result != 0)
+			return -(WIN - ply);
+
+		if ((++mNodes & 1023) == 0 && System.nanoTime() >= mDeadline)
+			mStop = true;
+		if (mStop)
+			return 0;
+
+		// nu pot face mai bine decat o victorie la mutarea urmatoare
+		alpha = Math.max(alpha, -(WIN - ply));
+		beta = Math.min(beta, WIN - ply - 1);
+		if (alpha >= beta)
+			return alpha;
+
+		long hash = mField.getHash();
+		long entry = mTable.probe(hash);
+		int firstMove = TranspositionTable.NO_MOVE;
+		if (entry != 0) {
+			int score = fromTable(TranspositionTable.score(entry), ply);
+			int bound = TranspositionTable.bound(entry);
+			if (ply > 0 && (bound == TranspositionTable.EXACT || (bound == TranspositionTable.LOWER && score >= beta)
+					|| (bound == TranspositionTable.UPPER && score <= alpha)))
+				return score;
+			firstMove = TranspositionTable.move(entry);
+		}
+
+		int[] moves = mMoves[ply];
+		int count = mField.generateMoves(moves);
+		scoreMoves(moves, count, player, firstMove);
+
+		int alphaOrig = alpha;
+		int best = -WIN, bestCell = TranspositionTable.NO_MOVE;
+
+		for (int i = 0; i < count; i++) {
+			int cell = Move.cell(nextMove(moves, i, count));
+			mField.setMove(cell, player);
+			int score = -negamax(player % 2 + 1, ply + 1, -beta, -alpha);
+			mField.unMove();
+
+			if (mStop)
+				return 0;
+
+			if (score > best) {
+				best = score;
+				bestCell = cell;
+				if (ply == 0)
+					mBestCell = cell;
+			}
+			if (score > alpha)
+				alpha = score;
+			if (alpha >= beta)
+				break;
+		}
+
+		int bound = best <= alphaOrig ? TranspositionTable.UPPER
+				: best >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+		mTable.store(hash, toTable(best, ply), bound, liveCells(mField), bestCell);
+		return best;
+	}
+
+	/**
+	 * Intai mutarea din tabela, apoi mutarile care castiga jocul, apoi cele
+	 * care castiga un patrat. Restul sunt ordonate dupa cat de putin ii dau
+	 * oponentului: mutarile care il trimit intr-un patrat unde are o
+	 * amenintare sau intr-un patrat terminat (mutare libera) sunt la final.
+	 */
+	private void scoreMoves(int[] moves, int count, int player, int firstMove) {
+		int other = player % 2 + 1;
+		int won = mField.getMacroWon(player);
+		int done = won | mField.getMacroWon(other) | mField.getMacroDrawn();
+
+		for (int i = 0; i < count; i++) {
+			int cell = Move.cell(moves[i]);
+			int board = Field.CELL_BOARD[cell], bit = Field.CELL_BIT[cell];
+			int score;
+
+			if (cell == firstMove) {
+				score = HASH_MOVE;
+			} else if ((mField.getThreats(player, board) & (1 << bit)) != 0) {
+				score = Field.WIN[won | (1 << board)] ? MACRO_WIN : MICRO_WIN;
+			} else {
+				score = 16;
+				if ((done & (1 << bit)) != 0 || bit == board)
+					score -= 8;
+				if (mField.getThreats(other, bit) != 0)
+					score -= 4;
+			}
+
+			moves[i] = Move.pack(cell, score);
+		}
+	}
+
+	private int nextMove(int[] moves, int i, int count) {
+		int best = i;
+		for (int j = i + 1; j < count; j++) {
+			if (moves[j] > moves[best])
+				best = j;
+		}
+
+		int move = moves[best];
+		moves[best] = moves[i];
+		moves[i] = move;
+		return move;
+	}
+
+	/**
+	 * Ca in Search: victoriile sunt retinute in tabela relativ la pozitie.
+	 */
+	private static int toTable(int score, int ply) {
+		return score > 0 ? score + ply : score < 0 ? score - ply : 0;
+	}
+
+	private static int fromTable(int score, int ply) {
+		return score > 0 ? score - ply : score < 0 ? score + ply : 0;
+	}
+
+	public int getBestCell() {
+		return mBestCell;
+	}
+
+	/**
+	 * WIN - n pentru o victorie in n mutari, -(WIN - n) pentru o infrangere,
+	 * 0 pentru egal.
+	 */
+	public int getScore() {
+		return mScore;
+	}
+
+	/**
+	 * Numarul de mutari (ale ambilor jucatori) pana la sfarsitul jocului,
+	 * pentru victorii si infrangeri; 0 pentru egal.
+	 */
+	public int getDistance() {
+		return mScore == 0 ? 0 : WIN - Math.abs(mScore);
+	}
+
+	public long getNodes() {
+		return mNodes;
+	}
+}
@@ -0,0 +1,79 @@
+// // Copyright 2016 theaigames.com (developers@theaigames.com)
+
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+
+//        http://www.apache.org/licenses/LICENSE-2.0
+
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+//    For the full copyright and license information, please view the LICENSE
+//    file that was distributed with this source code.
+
+package bot;
+
+/**
+ * Symmetry class
+ *
+ * Cele 8 simetrii ale tablei (rotatii si oglindiri). O simetrie a tablei de
+ * 9x9 muta patratele din MacroBoard si celulele din fiecare patrat la fel,
+ * asa ca regulile jocului raman aceleasi. Simetria 0 este identitatea.
+ */
+
+public class Symmetry {
+	public static final int COUNT = 8;
+
+	// CELLS[s][cell] - celula in care ajunge cell prin simetria s
+	public static final int[][] CELLS = new int[COUNT][81];
+
+	// INVERSE[s][cell] - celula care ajunge in cell prin simetria s
+	public static final int[][] INVERSE = new int[COUNT][81];
+
+	// MASKS[s][mask] - o masca de 9 biti (patrate sau celule dintr-un patrat)
+	// dupa simetria s
+	public static final int[][] MASKS = new int[COUNT][512];
+
+	static {
+		for (int s = 0; s < COUNT; s++) {
+			for (int cell = 0; cell < 81; cell++) {
+				int to = transform(s, cell % 9, cell / 9, 8);
+				CELLS[s][cell] = to;
+				INVERSE[s][to] = cell;
+			}
+			for (int mask = 0; mask < 512; mask++) {
+				int result = 0;
+				for (int bit = 0; bit < 9; bit++) {
+					if ((mask & (1 << bit)) != 0)
+						result |= 1 << transform(s, bit % 3, bit / 3, 2);
+				}
+				MASKS[s][mask] = result;
+			}
+		}
+	}
+
+	/**
+	 * Bitul 2 din s transpune tabla, bitul 0 o oglindeste pe orizontala si
+	 * bitul 1 pe verticala.
+	 *
+	 * @param max
+	 *            - ultima coordonata (8 pentru tabla, 2 pentru un patrat)
+	 * @return indicele y * (max + 1) + x dupa transformare
+	 */
+	private static int transform(int s, int x, int y, int max) {
+		if ((s & 4) != 0) {
+			int t = x;
+			x = y;
+			y = t;
+		}
+		if ((s & 1) != 0)
+			x = max - x;
+		if ((s & 2) != 0)
+			y = max - y;
+		return y * (max + 1) + x;
+	}
+}
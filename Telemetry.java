@@ -0,0 +1,83 @@
+// // Copyright 2016 theaigames.com (developers@theaigames.com)
+
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+
+//        http://www.apache.org/licenses/LICENSE-2.0
+
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+//    For the full copyright and license information, please view the LICENSE
+//    file that was distributed with this source code.
+
+package bot;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Locale;
+
+/**
+ * Telemetry class
+ *
+ * Statisticile fiecarei cautari: o linie JSON pe mutare, la stderr sau
+ * intr-un fisier, si un SearchEvent pentru JFR.
+ *
+ * Tot codul de telemetrie, inclusiv contoarele din Search si mesajele de
+ * diagnostic de la stderr, este in blocuri if (Telemetry.ENABLED). ENABLED
+ * este constanta din Build, false in sursele din radacina, asa ca
+ * compilatorul elimina blocurile si bot-ul trimis pe platforma nu plateste
+ * nimic pentru ele. Build-ul de dezvoltare o porneste cu dev/Build.java.
+ */
+
+public class Telemetry {
+	public static final boolean ENABLED = Build.TELEMETRY;
+
+	// null daca nu scriu JSON; evenimentele JFR sunt scrise oricum, daca
+	// exista o inregistrare pornita
+	private final PrintStream mOut;
+
+	public Telemetry(PrintStream out) {
+		mOut = out;
+	}
+
+	/**
+	 * @param target
+	 *            - "stderr", calea unui fisier la care adaug liniile, sau null
+	 *            pentru doar JFR
+	 */
+	public static Telemetry open(String target) throws IOException {
+		if (target == null || target.isEmpty())
+			return new Telemetry(null);
+		if (target.equals("stderr"))
+			return new Telemetry(System.err);
+		return new Telemetry(new PrintStream(new FileOutputStream(target, true), true));
+	}
+
+	public void record(SearchEvent event) {
+		if (mOut != null)
+			mOut.println(toJson(event));
+		event.commit();
+	}
+
+	private static String toJson(SearchEvent event) {
+		StringBuilder s = new StringBuilder(256);
+		s.append("{\"move\":").append(event.move);
+		s.append(",\"engine\":\"").append(event.engine).append('"');
+		s.append(",\"depth\":").append(event.depth);
+		s.append(",\"score\":").append(event.score);
+		s.append(",\"nodes\":").append(event.nodes);
+		s.append(",\"nps\":").append(event.nodesPerSecond);
+		s.append(",\"ebf\":").append(String.format(Locale.ROOT, "%.2f", event.branchingFactor));
+		s.append(",\"firstMoveCutoffs\":").append(String.format(Locale.ROOT, "%.3f", event.firstMoveCutoffs));
+		s.append(",\"ttHitRate\":").append(String.format(Locale.ROOT, "%.3f", event.tableHitRate));
+		s.append(",\"timeUsed\":").append(event.timeUsed);
+		s.append(",\"timeBudget\":").append(event.timeBudget);
+		return s.append('}').toString();
+	}
+}
@@ -0,0 +1,119 @@
+// // Copyright 2016 theaigames.com (developers@theaigames.com)
+
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+
+//        http://www.apache.org/licenses/LICENSE-2.0
+
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+//    For the full copyright and license information, please view the LICENSE
+//    file that was distributed with this source code.
+
+package bot;
+
+/**
+ * TimeManager class
+ *
+ * Imparte time bank-ul primit la "action move <time>" intre mutarile ramase.
+ * Pentru fiecare mutare calculeaza doua limite: una soft, dupa care nu mai
+ * incep o iteratie noua, si una hard (deadline), la care cautarea se opreste.
+ */
+
+public class TimeManager {
+
+	// valorile implicite de pe platforma
+	private int mTimebank = 10000;
+	private int mTimePerMove = 500;
+
+	// timp pastrat pentru JVM, citire si scriere
+	private int mSafetyMargin = 50;
+
+	private long mStart;
+	private long mSoftLimit;
+	private long mDeadline;
+
+	public void setTimebank(int timebank) {
+		mTimebank = timebank;
+	}
+
+	public void setTimePerMove(int timePerMove) {
+		mTimePerMove = timePerMove;
+	}
+
+	public void setSafetyMargin(int safetyMargin) {
+		mSafetyMargin = safetyMargin;
+	}
+
+	/**
+	 * Calculez limitele pentru mutarea curenta.
+	 *
+	 * @param timeLeft
+	 *            - timpul ramas in time bank, in ms
+	 * @param emptyCells
+	 *            - celulele libere, pentru a estima faza jocului
+	 */
+	public void start(int timeLeft, int emptyCells) {
+		mStart = System.nanoTime();
+
+		// estimez cate mutari mai am de facut; jocurile se termina de obicei
+		// inainte ca tabla sa se umple, deci nu impart la toate celulele
+		int movesToGo = Math.max(4, Math.min(20, emptyCells / 3));
+
+		// la inceput branch factor-ul este mare, dar pozitia conteaza mai
+		// putin; in mijlocul jocului merita cel mai mult timp
+		int budget = timeLeft / movesToGo + mTimePerMove * 3 / 4;
+		if (emptyCells > 70)
+			budget /= 2;
+
+		int available = Math.max(1, timeLeft - mSafetyMargin);
+		int hard = Math.min(available, Math.max(budget * 2, mTimePerMove / 2));
+		int soft = Math.min(budget, hard);
+
+		mSoftLimit = mStart + soft * 1000000L;
+		mDeadline = mStart + hard * 1000000L;
+	}
+
+	/**
+	 * Daca a trecut jumatate din limita soft, probabil nu mai termin o noua
+	 * iteratie, asa ca nu o mai incep.
+	 */
+	public boolean canStartIteration() {
+		return System.nanoTime() - mStart < (mSoftLimit - mStart) / 2;
+	}
+
+	public boolean isTimeUp() {
+		return System.nanoTime() >= mDeadline;
+	}
+
+	public long getDeadline() {
+		return mDeadline;
+	}
+
+	/**
+	 * Limita soft, pentru motoarele care nu cauta pe iteratii (MCTS).
+	 */
+	public long getSoftLimit() {
+		return mSoftLimit;
+	}
+
+	/**
+	 * Timpul planificat pentru mutarea curenta (limita soft), in ms.
+	 */
+	public long getBudgetMillis() {
+		return (mSoftLimit - mStart) / 1000000L;
+	}
+
+	public long getElapsedMillis() {
+		return (System.nanoTime() - mStart) / 1000000L;
+	}
+
+	public int getTimebank() {
+		return mTimebank;
+	}
+}
@@ -0,0 +1,148 @@
+// // Copyright 2016 theaigames.com (developers@theaigames.com)
+
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+
+//        http://www.apache.org/licenses/LICENSE-2.0
+
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+//    For the full copyright and license information, please view the LICENSE
+//    file that was distributed with this source code.
+
+package bot;
+
+/**
+ * TranspositionTable class
+ *
+ * Tabela de dimensiune fixa in care retin pozitiile deja cautate, indexata
+ * dupa hash-ul Zobrist din Field. Intrarile sunt in doi vectori de long (cheia
+ * si datele), grupate cate doua intr-un bucket, fara obiecte.
+ *
+ * Tabela este folosita de mai multe thread-uri fara lock-uri: in loc de cheie
+ * retin cheie ^ date, asa ca o intrare scrisa pe jumatate de alt thread nu se
+ * mai potriveste cu nicio cheie si este ignorata.
+ *
+ * Datele unei intrari: scorul (32 de biti), mutarea cea mai buna (7 biti),
+ * adancimea (8 biti), tipul scorului (2 biti) si varsta (8 biti).
+ */
+
+public class TranspositionTable {
+	public static final int EXACT = 1, LOWER = 2, UPPER = 3;
+
+	// o mutare care nu exista, pentru intrarile fara mutare
+	public static final int NO_MOVE = 0x7F;
+
+	private static final int MOVE_SHIFT = 32, DEPTH_SHIFT = 39, BOUND_SHIFT = 47, AGE_SHIFT = 49;
+
+	private final long[] mKeys;
+	private final long[] mData;
+	private final int mMask;
+	private int mAge;
+
+	/**
+	 * @param sizeMb
+	 *            - dimensiunea tabelei in MB; se rotunjeste in jos la o putere
+	 *            a lui 2
+	 */
+	public TranspositionTable(int sizeMb) {
+		long entries = Math.max(2, (long) sizeMb * 1024 * 1024 / 16);
+		int buckets = Integer.highestOneBit((int) Math.min(entries / 2, 1 << 28));
+		mKeys = new long[buckets * 2];
+		mData = new long[buckets * 2];
+		mMask = buckets - 1;
+	}
+
+	/**
+	 * Marchez inceputul unei cautari noi. Intrarile din cautarile vechi sunt
+	 * inlocuite primele.
+	 */
+	public void newSearch() {
+		mAge = (mAge + 1) & 0xFF;
+	}
+
+	public void clear() {
+		java.util.Arrays.fill(mKeys, 0);
+		java.util.Arrays.fill(mData, 0);
+	}
+
+	/**
+	 * Caut pozitia in tabela.
+	 *
+	 * @return datele intrarii sau 0 daca pozitia nu este in tabela
+	 */
+	public long probe(long key) {
+		int i = (int) (key & mMask) << 1;
+		long data = mData[i];
+		if ((mKeys[i] ^ data) == key && data != 0)
+			return data;
+		data = mData[i + 1];
+		if ((mKeys[i + 1] ^ data) == key && data != 0)
+			return data;
+		return 0;
+	}
+
+	/**
+	 * Salvez rezultatul cautarii. Daca pozitia este deja in bucket, o
+	 * suprascriu, in afara de cazul in care intrarea din aceeasi cautare este
+	 * mult mai adanca. Altfel inlocuiesc intrarea cea mai putin valoroasa:
+	 * cea mai veche si apoi cea mai putin adanca.
+	 */
+	public void store(long key, int score, int bound, int depth, int move) {
+		int i = (int) (key & mMask) << 1;
+		long first = mData[i], second = mData[i + 1];
+		int victim;
+
+		if ((mKeys[i] ^ first) == key || (mKeys[i + 1] ^ second) == key) {
+			victim = (mKeys[i] ^ first) == key ? i : i + 1;
+			long old = victim == i ? first : second;
+			if (old != 0 && age(old) == mAge && depth(old) > depth + 2 && bound != EXACT)
+				return;
+			// pastrez mutarea veche daca acum nu am una
+			if (move == NO_MOVE && old != 0)
+				move = move(old);
+		} else {
+			victim = worth(first) <= worth(second) ? i : i + 1;
+		}
+
+		long data = (score & 0xFFFFFFFFL) | ((long) move << MOVE_SHIFT) | ((long) depth << DEPTH_SHIFT)
+				| ((long) bound << BOUND_SHIFT) | ((long) mAge << AGE_SHIFT);
+		mKeys[victim] = key ^ data;
+		mData[victim] = data;
+	}
+
+	/**
+	 * Cat de valoroasa este o intrare: fiecare cautare de la care este
+	 * veche o face sa valoreze cat 8 niveluri de adancime.
+	 */
+	private int worth(long data) {
+		if (data == 0)
+			return Integer.MIN_VALUE;
+		return depth(data) - 8 * ((mAge - age(data)) & 0xFF);
+	}
+
+	public static int score(long data) {
+		return (int) data;
+	}
+
+	public static int move(long data) {
+		return (int) (data >>> MOVE_SHIFT) & 0x7F;
+	}
+
+	public static int depth(long data) {
+		return (int) (data >>> DEPTH_SHIFT) & 0xFF;
+	}
+
+	public static int bound(long data) {
+		return (int) (data >>> BOUND_SHIFT) & 0x3;
+	}
+
+	private static int age(long data) {
+		return (int) (data >>> AGE_SHIFT) & 0xFF;
+	}
+}
@@ -0,0 +1,603 @@
+// // Copyright 2016 theaigames.com (developers@theaigames.com)
+
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+
+//        http://www.apache.org/licenses/LICENSE-2.0
+
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+//    For the full copyright and license information, please view the LICENSE
+//    file that was distributed with this source code.
+
+package bot;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Tune class
+ *
+ * Ajustez ponderile evaluarii (Weights) dupa rezultatele partidelor, in
+ * stilul Texel: caut ponderile pentru care sigmoid(K * evaluare) prezice cel
+ * mai bine rezultatul, cu eroarea medie patratica. Intrarea are cate o
+ * pozitie pe linie, ca in fisierul scris de Referee cu referee.positions:
+ * field, macroboard si rezultatul pentru player 1 (1, 0.5 sau 0). Poate fi
+ * si un fisier de partide (GameRecords), din care iau toate pozitiile
+ * partidelor cu rezultat cunoscut.
+ *
+ * Evaluarea este biliniara in ponderi, asa ca pentru fiecare stare a unui
+ * patrat (si a MacroBoard-ului) retin doar trasaturile ei: secventele
+ * deschise, secventele cu doua blocuri si celulele ocupate pe clase (colt,
+ * margine, centru). O pozitie inseamna 9 coduri de patrat, un cod de
+ * MacroBoard si rezultatul, in vectori de primitive. Ponderile patratelor si
+ * ale celulelor sunt ajustate pe clase, ca evaluarea sa ramana simetrica
+ * (vezi Symmetry).
+ *
+ * Intai aleg K pentru ponderile initiale, apoi cobor pe gradient (Adam) cu
+ * ponderi reale si la final rotunjesc si incerc +-1 pe fiecare pondere cat
+ * timp eroarea scade. Fiecare trecere prin pozitii este impartita pe toate
+ * thread-urile. Ponderile sunt scrise in formatul citit de Weights.load
+ * (bot.weights).
+ *
+ * La eroare se adauga o regularizare L2 catre ponderile implicite, relativa
+ * la marimea fiecareia, iar ponderile raman in intervalul permis de Weights.
+ * Cu mai putin de MIN_POSITIONS pozitii nu ajustez nimic: rezultatul ar
+ * urmari zgomotul din cateva partide.
+ *
+ * java bot.Tune [-iterations n] [-threads t] [-lambda l] [-out
+ * weights.properties] [fisier...]
+ */
+
+public class Tune {
+
+	// parametrii: winMicroScore, MacroBoardWeight, ponderea patratelor si
+	// valoarea celulelor, ultimele doua pentru colt, margine si centru
+	static final int WIN_MICRO = 0, MACRO = 1, BOARD = 2, CELL = 5, COUNT = 8;
+
+	// cate pozitii trebuie sa am ca sa ajustez ponderile
+	static final int MIN_POSITIONS = 10000;
+
+	// ponderea implicita a regularizarii
+	static final double LAMBDA = 1e-4;
+
+	// clasa fiecarui bit dintr-un patrat: 0 colt, 1 margine, 2 centru
+	static final int[] CLASS = new int[] { 0, 1, 0, 1, 2, 1, 0, 1, 0 };
+
+	// trasaturile unui patrat neterminat pentru player 1, dupa cod: diferenta
+	// secventelor deschise, diferenta secventelor cu doua blocuri si
+	// diferenta celulelor din fiecare clasa
+	private static final byte[] BOARD_FEATURES = new byte[Field.STATES * 5];
+
+	// la fel pentru MacroBoard, dupa codul in baza 4 al patratelor: 0 liber,
+	// 1 si 2 castigat de player, 3 egal
+	private static final int MACRO_STATES = 1 << 18;
+	private static final byte[] MACRO_FEATURES = new byte[MACRO_STATES * 5];
+
+	static {
+		for (int code = 0; code < Field.STATES; code++)
+			features(Field.decode(code, 1), Field.decode(code, 2), 0, BOARD_FEATURES, code * 5);
+		for (int macro = 0; macro < MACRO_STATES; macro++)
+			features(macroMask(macro, 1), macroMask(macro, 2), macroMask(macro, 3), MACRO_FEATURES, macro * 5);
+	}
+
+	private final int mThreads;
+	private final ExecutorService mWorkers;
+	private final Positions mPositions;
+
+	// ponderile catre care trag cu regularizarea si cat de tare
+	private final double[] mDefaults = toDouble(parameters(Weights.DEFAULT));
+	private double mLambda = LAMBDA;
+
+	public Tune(Positions positions, int threads) {
+		mPositions = positions;
+		mThreads = threads;
+		mWorkers = Executors.newFixedThreadPool(threads);
+	}
+
+	public void setRegularization(double lambda) {
+		mLambda = lambda;
+	}
+
+	/**
+	 * Pozitiile etichetate, in vectori de primitive: 9 coduri de patrat
+	 * pentru fiecare pozitie, codul MacroBoard-ului si rezultatul pentru
+	 * player 1 in jumatati (0, 1 sau 2).
+	 */
+	static class Positions {
+		short[] codes = new short[9 * 1024];
+		int[] macro = new int[1024];
+		byte[] result = new byte[1024];
+		int size;
+
+		/**
+		 * Adaug pozitia din field.
+		 *
+		 * @param halves
+		 *            - rezultatul pentru player 1: 2 victorie, 1 egal, 0
+		 *            infrangere
+		 */
+		void add(Field field, int halves) {
+			if (size == macro.length) {
+				codes = Arrays.copyOf(codes, codes.length * 2);
+				macro = Arrays.copyOf(macro, macro.length * 2);
+				result = Arrays.copyOf(result, result.length * 2);
+			}
+
+			int won1 = field.getMacroWon(1), won2 = field.getMacroWon(2), drawn = field.getMacroDrawn();
+			int state = 0;
+			for (int board = 0; board < 9; board++) {
+				int first = field.getBoardMask(1, board), second = field.getBoardMask(2, board);
+				int code = 0;
+				for (int bit = 0; bit < 9; bit++) {
+					if ((first & (1 << bit)) != 0)
+						code += Field.POW3[bit];
+					else if ((second & (1 << bit)) != 0)
+						code += 2 * Field.POW3[bit];
+				}
+				codes[size * 9 + board] = (short) code;
+
+				int b = 1 << board;
+				state |= ((won1 & b) != 0 ? 1 : (won2 & b) != 0 ? 2 : (drawn & b) != 0 ? 3 : 0) << (2 * board);
+			}
+			macro[size] = state;
+			result[size] = (byte) halves;
+			size++;
+		}
+
+		void addAll(Positions other) {
+			for (int i = 0; i < other.size; i++) {
+				if (size == macro.length) {
+					int capacity = Math.max(macro.length * 2, size + other.size);
+					codes = Arrays.copyOf(codes, capacity * 9);
+					macro = Arrays.copyOf(macro, capacity);
+					result = Arrays.copyOf(result, capacity);
+				}
+				System.arraycopy(other.codes, i * 9, codes, size * 9, 9);
+				macro[size] = other.macro[i];
+				result[size] = other.result[i];
+				size++;
+			}
+		}
+	}
+
+	/**
+	 * Masca patratelor din MacroBoard cu starea data (1, 2 sau 3).
+	 */
+	private static int macroMask(int macro, int state) {
+		int mask = 0;
+		for (int board = 0; board < 9; board++) {
+			if (((macro >>> (2 * board)) & 3) == state)
+				mask |= 1 << board;
+		}
+		return mask;
+	}
+
+	/**
+	 * Trasaturile lui Weights.calculateBoardScore pentru player 1, fara
+	 * ponderi: scorul este open + winMicroScore * two + suma celulelor
+	 * inmultite cu valoarea clasei lor.
+	 */
+	private static void features(int first, int second, int blocked, byte[] out, int offset) {
+		int open = 0, two = 0;
+		for (int seq : Field.LINES) {
+			if ((seq & blocked) != 0)
+				continue;
+			int mine = Integer.bitCount(seq & first), theirs = Integer.bitCount(seq & second);
+			if (mine > 0 && theirs == 0) {
+				open++;
+				if (mine == 2)
+					two++;
+			} else if (theirs > 0 && mine == 0) {
+				open--;
+				if (theirs == 2)
+					two--;
+			}
+		}
+		out[offset] = (byte) open;
+		out[offset + 1] = (byte) two;
+		for (int bit = 0; bit < 9; bit++) {
+			if ((first & (1 << bit)) != 0)
+				out[offset + 2 + CLASS[bit]]++;
+			else if ((second & (1 << bit)) != 0)
+				out[offset + 2 + CLASS[bit]]--;
+		}
+	}
+
+	/**
+	 * Evaluarea pozitiei i pentru player 1 cu ponderile w; daca grad nu este
+	 * null, ii adun derivatele evaluarii inmultite cu factor.
+	 */
+	private static double evaluate(Positions positions, int i, double[] w, double[] grad, double factor) {
+		int macro = positions.macro[i];
+		int m = macro * 5;
+		byte[] f = MACRO_FEATURES;
+		double macroCells = w[CELL] * f[m + 2] + w[CELL + 1] * f[m + 3] + w[CELL + 2] * f[m + 4];
+		double macroScore = f[m] + w[WIN_MICRO] * f[m + 1] + macroCells;
+		double value = w[MACRO] * macroScore;
+
+		if (grad != null) {
+			grad[MACRO] += factor * macroScore;
+			grad[WIN_MICRO] += factor * w[MACRO] * f[m + 1];
+			for (int c = 0; c < 3; c++)
+				grad[CELL + c] += factor * w[MACRO] * f[m + 2 + c];
+		}
+
+		f = BOARD_FEATURES;
+		short[] codes = positions.codes;
+		for (int board = 0; board < 9; board++) {
+			if (((macro >>> (2 * board)) & 3) != 0)
+				continue;
+			int b = codes[i * 9 + board] * 5;
+			double weight = w[BOARD + CLASS[board]];
+			double score = f[b] + w[WIN_MICRO] * f[b + 1] + w[CELL] * f[b + 2] + w[CELL + 1] * f[b + 3]
+					+ w[CELL + 2] * f[b + 4];
+			value += weight * score;
+
+			if (grad != null) {
+				grad[BOARD + CLASS[board]] += factor * score;
+				grad[WIN_MICRO] += factor * weight * f[b + 1];
+				for (int c = 0; c < 3; c++)
+					grad[CELL + c] += factor * weight * f[b + 2 + c];
+			}
+		}
+		return value;
+	}
+
+	private static double sigmoid(double x) {
+		return 1 / (1 + Math.exp(-x));
+	}
+
+	/**
+	 * O trecere prin toate pozitiile, impartita pe thread-uri.
+	 *
+	 * @param grad
+	 *            - daca nu este null, primeste gradientul erorii
+	 * @return eroarea medie patratica plus regularizarea
+	 */
+	private double error(double[] w, double k, double[] grad) throws InterruptedException {
+		int size = mPositions.size;
+		List<Callable<double[]>> tasks = new ArrayList<Callable<double[]>>();
+		for (int t = 0; t < mThreads; t++) {
+			int from = (int) ((long) size * t / mThreads), to = (int) ((long) size * (t + 1) / mThreads);
+			tasks.add(() -> slice(w, k, grad != null, from, to));
+		}
+
+		double[] total = new double[COUNT + 1];
+		try {
+			for (Future<double[]> future : mWorkers.invokeAll(tasks)) {
+				double[] part = future.get();
+				for (int j = 0; j <= COUNT; j++)
+					total[j] += part[j];
+			}
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		}
+
+		if (grad != null) {
+			for (int j = 0; j < COUNT; j++)
+				grad[j] = total[j + 1] / size;
+		}
+		return total[0] / size + penalty(w, grad);
+	}
+
+	/**
+	 * Regularizarea: lambda * suma ((w - implicit) / implicit)^2; daca grad
+	 * nu este null, ii adun derivatele.
+	 */
+	private double penalty(double[] w, double[] grad) {
+		double penalty = 0;
+		for (int j = 0; j < COUNT; j++) {
+			double scale = Math.max(1, mDefaults[j]);
+			double d = (w[j] - mDefaults[j]) / scale;
+			penalty += mLambda * d * d;
+			if (grad != null)
+				grad[j] += 2 * mLambda * d / scale;
+		}
+		return penalty;
+	}
+
+	private static double clamp(double w) {
+		return Math.max(Weights.MIN_WEIGHT, Math.min(Weights.MAX_WEIGHT, w));
+	}
+
+	/**
+	 * Eroarea (pe pozitia 0) si gradientul (pe pozitiile 1..COUNT) pentru
+	 * pozitiile din [from, to).
+	 */
+	private double[] slice(double[] w, double k, boolean gradient, int from, int to) {
+		double[] part = new double[COUNT + 1];
+		double[] grad = gradient ? new double[COUNT] : null;
+		byte[] result = mPositions.result;
+
+		for (int i = from; i < to; i++) {
+			double value = evaluate(mPositions, i, w, null, 0);
+			double s = sigmoid(k * value);
+			double diff = result[i] * 0.5 - s;
+			part[0] += diff * diff;
+
+			// d(diff^2)/dw = -2 * diff * s * (1 - s) * k * d(value)/dw
+			if (gradient)
+				evaluate(mPositions, i, w, grad, -2 * diff * s * (1 - s) * k);
+		}
+
+		if (gradient)
+			System.arraycopy(grad, 0, part, 1, COUNT);
+		return part;
+	}
+
+	/**
+	 * K pentru care ponderile date au eroarea minima, cu cautare de sectiune
+	 * de aur pe log(K).
+	 */
+	double fitK(double[] w) throws InterruptedException {
+		double low = Math.log(1e-5), high = Math.log(1);
+		double ratio = (Math.sqrt(5) - 1) / 2;
+		for (int step = 0; step < 40; step++) {
+			double a = high - ratio * (high - low), b = low + ratio * (high - low);
+			if (error(w, Math.exp(a), null) < error(w, Math.exp(b), null))
+				high = b;
+			else
+				low = a;
+		}
+		return Math.exp((low + high) / 2);
+	}
+
+	/**
+	 * Cobor pe gradient cu Adam, in ponderi reale.
+	 */
+	double[] descend(double[] start, double k, int iterations, double rate) throws InterruptedException {
+		double[] w = start.clone(), grad = new double[COUNT];
+		double[] m = new double[COUNT], v = new double[COUNT];
+		double beta1 = 0.9, beta2 = 0.999;
+
+		for (int t = 1; t <= iterations; t++) {
+			double error = error(w, k, grad);
+			for (int j = 0; j < COUNT; j++) {
+				m[j] = beta1 * m[j] + (1 - beta1) * grad[j];
+				v[j] = beta2 * v[j] + (1 - beta2) * grad[j] * grad[j];
+				double mHat = m[j] / (1 - Math.pow(beta1, t)), vHat = v[j] / (1 - Math.pow(beta2, t));
+				w[j] = clamp(w[j] - rate * mHat / (Math.sqrt(vHat) + 1e-12));
+			}
+			if (t % 20 == 0 || t == iterations)
+				System.err.printf("iteration %d error %.6f %s%n", t, error, Arrays.toString(round(w)));
+		}
+		return w;
+	}
+
+	/**
+	 * Rotunjesc ponderile si incerc +-1 pe fiecare, cat timp eroarea scade si
+	 * ponderea ramane in interval.
+	 */
+	int[] refine(double[] real, double k) throws InterruptedException {
+		int[] w = round(real);
+		double best = error(toDouble(w), k, null);
+		boolean improved = true;
+		while (improved) {
+			improved = false;
+			for (int j = 0; j < COUNT; j++) {
+				for (int delta = -1; delta <= 1; delta += 2) {
+					if (w[j] + delta < Weights.MIN_WEIGHT || w[j] + delta > Weights.MAX_WEIGHT)
+						continue;
+					w[j] += delta;
+					double error = error(toDouble(w), k, null);
+					if (error < best) {
+						best = error;
+						improved = true;
+						System.err.printf("refine error %.6f %s%n", error, Arrays.toString(w));
+					} else {
+						w[j] -= delta;
+					}
+				}
+			}
+		}
+		return w;
+	}
+
+	void shutdown() {
+		mWorkers.shutdown();
+	}
+
+	private static int[] round(double[] w) {
+		int[] result = new int[w.length];
+		for (int j = 0; j < w.length; j++)
+			result[j] = (int) Math.round(w[j]);
+		return result;
+	}
+
+	private static double[] toDouble(int[] w) {
+		double[] result = new double[w.length];
+		for (int j = 0; j < w.length; j++)
+			result[j] = w[j];
+		return result;
+	}
+
+	/**
+	 * Parametrii din Weights; ponderile pe clase sunt luate de la primul
+	 * patrat (sau bit) din clasa.
+	 */
+	static int[] parameters(Weights weights) {
+		int[] w = new int[COUNT];
+		w[WIN_MICRO] = weights.winMicroScore;
+		w[MACRO] = weights.MacroBoardWeight;
+		for (int bit = 8; bit >= 0; bit--) {
+			w[BOARD + CLASS[bit]] = weights.weights[bit];
+			w[CELL + CLASS[bit]] = weights.cellWeights[bit];
+		}
+		return w;
+	}
+
+	static Weights toWeights(int[] w) {
+		int[] weights = new int[9];
+		int[][] matrixWeights = new int[3][3];
+		for (int bit = 0; bit < 9; bit++) {
+			weights[bit] = w[BOARD + CLASS[bit]];
+			matrixWeights[bit % 3][bit / 3] = w[CELL + CLASS[bit]];
+		}
+		return new Weights(w[WIN_MICRO], w[MACRO], weights, matrixWeights);
+	}
+
+	/**
+	 * Citesc pozitiile din fisier in bucati, fiecare parsata pe alt thread.
+	 * Verific ca evaluarea din trasaturi este aceeasi cu Field.evaluate, ca
+	 * ponderile ajustate sa insemne acelasi lucru in bot.
+	 */
+	static Positions load(BufferedReader in, ExecutorService workers) throws IOException, InterruptedException {
+		List<Future<Positions>> chunks = new ArrayList<Future<Positions>>();
+		String[] lines = new String[1 << 14];
+		int count = 0;
+		for (String line = in.readLine(); line != null; line = in.readLine()) {
+			if (line.isEmpty())
+				continue;
+			lines[count++] = line;
+			if (count == lines.length) {
+				String[] chunk = lines;
+				chunks.add(workers.submit(() -> parse(chunk, chunk.length)));
+				lines = new String[lines.length];
+				count = 0;
+			}
+		}
+		String[] last = lines;
+		int lastCount = count;
+		chunks.add(workers.submit(() -> parse(last, lastCount)));
+
+		Positions positions = new Positions();
+		try {
+			for (Future<Positions> chunk : chunks)
+				positions.addAll(chunk.get());
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		}
+		return positions;
+	}
+
+	/**
+	 * Iau pozitiile din fisierul de partide, cate un bloc pe fiecare task.
+	 */
+	static Positions load(GameRecords records, ExecutorService workers) throws InterruptedException {
+		List<Future<Positions>> blocks = new ArrayList<Future<Positions>>();
+		for (int block = 0; block < records.blocks(); block++) {
+			int b = block;
+			blocks.add(workers.submit(() -> {
+				Positions positions = new Positions();
+				double[] defaults = toDouble(parameters(Weights.DEFAULT));
+				records.replayBlock(b, new Field(), (field, player, move, result) -> {
+					if (result != GameRecords.UNKNOWN)
+						add(positions, field, result == 1 ? 2 : result == 2 ? 0 : 1, defaults);
+				});
+				return positions;
+			}));
+		}
+
+		Positions positions = new Positions();
+		try {
+			for (Future<Positions> block : blocks)
+				positions.addAll(block.get());
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		}
+		return positions;
+	}
+
+	private static void add(Positions positions, Field field, int halves, double[] defaults) {
+		positions.add(field, halves);
+		if (evaluate(positions, positions.size - 1, defaults, null, 0) != field.evaluate(1))
+			throw new IllegalStateException("features do not match Field.evaluate: " + field);
+	}
+
+	private static Positions parse(String[] lines, int count) {
+		Positions positions = new Positions();
+		double[] defaults = toDouble(parameters(Weights.DEFAULT));
+		Field field = new Field();
+
+		for (int i = 0; i < count; i++) {
+			String[] parts = lines[i].trim().split("\\s+");
+			if (parts.length < 3)
+				throw new IllegalArgumentException("expected field, macroboard and result: " + lines[i]);
+			field.parseFromBytes(parts[0].getBytes(), 0, parts[0].length());
+			field.parseMacroboardFromBytes(parts[1].getBytes(), 0, parts[1].length());
+			add(positions, field, (int) Math.round(Double.parseDouble(parts[2]) * 2), defaults);
+		}
+		return positions;
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int iterations = 200, threads = Runtime.getRuntime().availableProcessors();
+		double rate = 0.1, lambda = LAMBDA;
+		String out = "weights.properties";
+		List<String> files = new ArrayList<String>();
+
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-iterations"))
+				iterations = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-threads"))
+				threads = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-rate"))
+				rate = Double.parseDouble(args[++i]);
+			else if (args[i].equals("-lambda"))
+				lambda = Double.parseDouble(args[++i]);
+			else if (args[i].equals("-out"))
+				out = args[++i];
+			else
+				files.add(args[i]);
+		}
+
+		long start = System.nanoTime();
+		ExecutorService loaders = Executors.newFixedThreadPool(threads);
+		Positions positions = new Positions();
+		if (files.isEmpty()) {
+			positions = load(new BufferedReader(new InputStreamReader(System.in)), loaders);
+		}
+		for (String file : files) {
+			if (GameRecords.isRecordFile(file)) {
+				positions.addAll(load(GameRecords.open(file), loaders));
+				continue;
+			}
+			try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+				positions.addAll(load(in, loaders));
+			}
+		}
+		loaders.shutdown();
+		System.err.println("loaded " + positions.size + " positions in " + (System.nanoTime() - start) / 1000000L
+				+ " ms");
+		if (positions.size < MIN_POSITIONS) {
+			System.err.println("need at least " + MIN_POSITIONS + " positions, not tuning");
+			System.exit(1);
+		}
+
+		Tune tune = new Tune(positions, threads);
+		tune.setRegularization(lambda);
+		try {
+			double[] initial = toDouble(parameters(Weights.DEFAULT));
+			double k = tune.fitK(initial);
+			double before = tune.error(initial, k, null);
+			System.err.printf("K %.6f error %.6f%n", k, before);
+
+			int[] w = tune.refine(tune.descend(initial, k, iterations, rate), k);
+			double after = tune.error(toDouble(w), k, null);
+
+			Weights weights = toWeights(w);
+			weights.store(out, String.format("Tune: %d positions, K %.6f, error %.6f -> %.6f", positions.size, k,
+					before, after));
+			System.out.println(weights);
+			System.err.println("done in " + (System.nanoTime() - start) / 1000000000L + " s");
+		} finally {
+			tune.shutdown();
+		}
+	}
+}
@@ -0,0 +1,285 @@
+// // Copyright 2016 theaigames.com (developers@theaigames.com)
+
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+
+//        http://www.apache.org/licenses/LICENSE-2.0
+
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+//    For the full copyright and license information, please view the LICENSE
+//    file that was distributed with this source code.
+
+package bot;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+/**
+ * Weights class
+ *
+ * Ponderile folosite de evaluare si tabelele derivate din ele. Field le
+ * foloseste pentru evaluarea incrementala.
+ *
+ * Tabela boardScore are scorul calculateBoardScore pentru fiecare dintre cele
+ * 3^9 stari ale unui patrat (codul din Field). Este generata in constructor,
+ * deci un Weights cu alte ponderi are automat tabela lui.
+ *
+ * Ponderile pot fi citite dintr-un fisier properties (vezi load), de exemplu
+ * cel scris de Tune:
+ *
+ * winMicroScore=7
+ * macroBoardWeight=23
+ * weights=3,2,3,2,4,2,3,2,3
+ * matrixWeights=3,2,3,2,4,2,3,2,3
+ */
+
+public class Weights {
+
+	// ponderile alese de noi
+	public static final Weights DEFAULT = new Weights();
+
+	// intervalul permis pentru fiecare pondere citita din fisier sau
+	// ajustata de Tune; o pondere negativa ar inversa semnul unei clase de
+	// patrate sau celule, iar una prea mare ar strica marjele din Search
+	public static final int MIN_WEIGHT = 0, MAX_WEIGHT = 100;
+
+	final int winMicroScore;
+	final int MacroBoardWeight;
+
+	// cat de importante sunt acele patrate(blocuri)
+	final int[] weights;
+	final int[][] matrixWeights;
+
+	// lineScore[blocuri player 1][blocuri player 2] - cat valoreaza o
+	// secventa castigatoare pentru player 1
+	final int[][] lineScore = new int[4][4];
+
+	// valoarea fiecarui bit dintr-un patrat, din matrixWeights
+	final int[] cellWeights = new int[9];
+
+	// boardScore[cod] - scorul patratului pentru player 1; pentru player 2
+	// este acelasi scor cu minus
+	final int[] boardScore = new int[Field.STATES];
+
+	public Weights() {
+		this(7, 23, new int[] { 3, 2, 3, 2, 4, 2, 3, 2, 3 }, new int[][] { {3, 2, 3}, {2, 4, 2}, {3, 2, 3 } });
+	}
+
+	/**
+	 * @param weights
+	 *            - ponderea fiecarui patrat, dupa indicele lui
+	 * @param matrixWeights
+	 *            - valoarea fiecarei celule dintr-un patrat, [x][y]
+	 */
+	public Weights(int winMicroScore, int macroBoardWeight, int[] weights, int[][] matrixWeights) {
+		this.winMicroScore = winMicroScore;
+		this.MacroBoardWeight = macroBoardWeight;
+		this.weights = weights.clone();
+		this.matrixWeights = new int[3][];
+		for (int x = 0; x < 3; x++)
+			this.matrixWeights[x] = matrixWeights[x].clone();
+
+		for (int mine = 0; mine < 4; mine++) {
+			for (int theirs = 0; theirs < 4; theirs++) {
+				lineScore[mine][theirs] = lineValue(mine, theirs) - lineValue(theirs, mine);
+			}
+		}
+		for (int bit = 0; bit < 9; bit++) {
+			cellWeights[bit] = matrixWeights[bit % 3][bit / 3];
+		}
+		for (int code = 0; code < Field.STATES; code++) {
+			boardScore[code] = calculateBoardScore(Field.decode(code, 1), Field.decode(code, 2), 0, 1);
+		}
+	}
+
+	/**
+	 * Citesc ponderile dintr-un fisier properties. Cheile care lipsesc raman
+	 * cu valorile din DEFAULT; o pondere in afara [MIN_WEIGHT, MAX_WEIGHT]
+	 * inseamna un fisier gresit.
+	 */
+	public static Weights load(String path) throws IOException {
+		Properties properties = new Properties();
+		try (InputStream in = new FileInputStream(path)) {
+			properties.load(in);
+		}
+
+		int[] weights = parse(properties.getProperty("weights"), DEFAULT.weights);
+		int[] cells = parse(properties.getProperty("matrixWeights"), DEFAULT.cellWeights);
+		int[][] matrixWeights = new int[3][3];
+		for (int bit = 0; bit < 9; bit++)
+			matrixWeights[bit % 3][bit / 3] = cells[bit];
+
+		int winMicroScore = Integer
+				.parseInt(properties.getProperty("winMicroScore", String.valueOf(DEFAULT.winMicroScore)).trim());
+		int macroBoardWeight = Integer
+				.parseInt(properties.getProperty("macroBoardWeight", String.valueOf(DEFAULT.MacroBoardWeight)).trim());
+		check("winMicroScore", winMicroScore);
+		check("macroBoardWeight", macroBoardWeight);
+		for (int i = 0; i < 9; i++) {
+			check("weights", weights[i]);
+			check("matrixWeights", cells[i]);
+		}
+		return new Weights(winMicroScore, macroBoardWeight, weights, matrixWeights);
+	}
+
+	private static void check(String key, int value) {
+		if (value < MIN_WEIGHT || value > MAX_WEIGHT)
+			throw new IllegalArgumentException(
+					key + " out of range [" + MIN_WEIGHT + ", " + MAX_WEIGHT + "]: " + value);
+	}
+
+	private static int[] parse(String value, int[] fallback) {
+		if (value == null)
+			return fallback;
+		String[] parts = value.split(",");
+		if (parts.length != 9)
+			throw new IllegalArgumentException("expected 9 values: " + value);
+		int[] result = new int[9];
+		for (int i = 0; i < 9; i++)
+			result[i] = Integer.parseInt(parts[i].trim());
+		return result;
+	}
+
+	/**
+	 * Scriu ponderile in formatul citit de load; matrixWeights este scris dupa
+	 * bitul celulei (y * 3 + x), ca weights.
+	 */
+	public void store(String path, String comment) throws IOException {
+		Properties properties = new Properties();
+		properties.setProperty("winMicroScore", String.valueOf(winMicroScore));
+		properties.setProperty("macroBoardWeight", String.valueOf(MacroBoardWeight));
+		properties.setProperty("weights", join(weights));
+		properties.setProperty("matrixWeights", join(cellWeights));
+		try (OutputStream out = new FileOutputStream(path)) {
+			properties.store(out, comment);
+		}
+	}
+
+	private static String join(int[] values) {
+		StringBuilder s = new StringBuilder();
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0)
+				s.append(',');
+			s.append(values[i]);
+		}
+		return s.toString();
+	}
+
+	@Override
+	public String toString() {
+		return "winMicroScore " + winMicroScore + " macroBoardWeight " + MacroBoardWeight + " weights "
+				+ join(weights) + " matrixWeights " + join(cellWeights);
+	}
+
+	/**
+	 * Cat primeste player-ul pentru o secventa: 1 daca are blocuri in ea si
+	 * inca o poate castiga, plus winMicroScore daca are doua blocuri.
+	 */
+	private int lineValue(int playerBlocks, int opponentBlocks) {
+		if (playerBlocks == 0 || opponentBlocks > 0)
+			return 0;
+		return playerBlocks == 2 ? winMicroScore + 1 : 1;
+	}
+
+	/**
+	 * Functie de evaluare a mutarii, calculata de la zero. Field tine acelasi
+	 * scor incremental (Field.evaluate); aceasta varianta ramane ca referinta.
+	 * @return scorul evaluarii.
+	 */
+	public int evaluate(Field field, int player) {
+
+		// calculez scorul pentru MacroBoard
+		// il inmultesc cu un weight, deoarece este mai important MacroBoard ca un MiniBoard
+		int value = calculateMacroBoardScore(field, player) * MacroBoardWeight;
+
+		int done = field.getMacroWon(1) | field.getMacroWon(2) | field.getMacroDrawn();
+
+		// calculez pentru fiecare patrat scorul
+		for (int i = 0; i < 9; i++) {
+
+			// daca nu este un patrat terminat
+			if ((done & (1 << i)) == 0) {
+
+				// la acel scor adun scorul pentru fiecare miniBoard
+				// pe care il inmultesc cu valoarea respectiva asociata patratului
+				value += calculateBoardScore(field.getBoardMask(player, i),
+						field.getBoardMask(player % 2 + 1, i), 0, player) * weights[i];
+			}
+		}
+
+		return value;
+	}
+
+	/**
+	 * Calculez scorul unui patrat de 3x3 din mastile celor doi playeri. Este
+	 * folosit atat pentru fiecare miniBoard, cat si pentru MacroBoard, unde
+	 * blocked sunt patratele terminate la egal.
+	 */
+	private int calculateBoardScore(int playerMask, int opponentMask, int blocked, int player) {
+
+		int playerScore = 0, opponentScore = 0;
+		int playerBlocks = 0, opponentBlocks = 0;
+
+		// pentru fiecare secventa castigatoare dintr-un patrat
+		for (int seq : Field.LINES) {
+
+			// o secventa care contine un patrat egal nu mai poate fi castigata
+			if ((seq & blocked) != 0)
+				continue;
+
+			// calculez cate blocuri am eu si cate are oponentul
+			playerBlocks = Integer.bitCount(seq & playerMask);
+			opponentBlocks = Integer.bitCount(seq & opponentMask);
+
+			// daca o secventa contine un bloc al meu, adun 1
+			// daca o secventa contine doua blocuri identice, adun 1 + un scor
+			// daca intr-o secventa se gasesc blocuri diferite
+			// atunci nu mai poate fi o secventa castigatoare
+			if (playerBlocks > 0) {
+				if (opponentBlocks > 0)
+					continue;
+				if (playerBlocks == 2)
+					playerScore += winMicroScore;
+				playerScore += 1;
+			} else if (opponentBlocks > 0) {
+				if (opponentBlocks == 2)
+					opponentScore += winMicroScore;
+				opponentScore += 1;
+			}
+		}
+
+		int value = 0;
+		// de asemenea, calculez cat de "valoros" este patratul
+		// facand referire la weights
+		for (int bit = 0; bit < 9; bit++) {
+			if ((playerMask & (1 << bit)) != 0) {
+				value += matrixWeights[bit % 3][bit / 3];
+			} else if ((opponentMask & (1 << bit)) != 0) {
+				value -= matrixWeights[bit % 3][bit / 3];
+			}
+		}
+
+		// adun valoarea de mai sus cu diferenta dintre scorul meu si scorul oponentului
+		return playerScore - opponentScore + value;
+	}
+	
+	/**
+	 * Calculez scorul asociat lui macroBoard. Valoarea returnata va fi inmultita mai sus
+	 * cu o alta valoare, deoarece un patrat din macroBoard este mai important ca unul 
+	 * din miniBoard.
+	 */
+	private int calculateMacroBoardScore(Field field, int player) {
+		return calculateBoardScore(field.getMacroWon(player), field.getMacroWon(player % 2 + 1),
+				field.getMacroDrawn(), player);
+	}
+}
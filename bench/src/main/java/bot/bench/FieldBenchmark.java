@@ -0,0 +1,104 @@
+package bot.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import bot.Field;
+import bot.Move;
+import bot.Weights;
+
+/**
+ * FieldBenchmark class
+ *
+ * Operatiile din Field folosite in fiecare nod al cautarii, masurate pe
+ * fiecare pozitie din Positions.
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FieldBenchmark {
+
+	@Param({ "start", "opening1", "middlegame1", "freemove1", "endgame1" })
+	public String position;
+
+	private Field field;
+	private int player;
+	private final int[] moves = new int[81];
+	private int count;
+
+	@Setup
+	public void setup() {
+		field = Positions.load(position);
+		player = Positions.sideToMove(field);
+		count = field.generateMoves(moves);
+	}
+
+	/**
+	 * setMove + unMove pentru fiecare mutare valabila din pozitie.
+	 */
+	@Benchmark
+	public long setMoveUnMove() {
+		long hash = 0;
+		for (int i = 0; i < count; i++) {
+			field.setMove(Move.cell(moves[i]), player);
+			hash ^= field.getHash();
+			field.unMove();
+		}
+		return hash;
+	}
+
+	@Benchmark
+	public int generateMoves() {
+		return field.generateMoves(moves);
+	}
+
+	@Benchmark
+	public int getAvailableMoves() {
+		return field.getAvailableMoves().size();
+	}
+
+	@Benchmark
+	public int checkForVictory() {
+		int result = 0;
+		for (int board = 0; board < 9; board++) {
+			result += field.checkForVictory(board);
+		}
+		return result;
+	}
+
+	@Benchmark
+	public int checkmMacroBoardForVictory() {
+		return field.checkmMacroBoardForVictory();
+	}
+
+	/**
+	 * Evaluarea tinuta incremental de Field, folosita in frunze.
+	 */
+	@Benchmark
+	public int evaluate() {
+		return field.evaluate(player);
+	}
+
+	/**
+	 * Evaluarea calculata de la zero, ca referinta.
+	 */
+	@Benchmark
+	public int evaluateFromScratch() {
+		return Weights.DEFAULT.evaluate(field, player);
+	}
+}
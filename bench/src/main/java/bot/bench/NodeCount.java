@@ -0,0 +1,52 @@
+package bot.bench;
+
+import bot.Field;
+import bot.Search;
+import bot.TranspositionTable;
+
+/**
+ * NodeCount class
+ *
+ * Numarul de noduri al fiecarui mod de cautare (vezi Search.setMode) pe
+ * pozitiile din Positions, la o adancime fixa, cu o tabela noua pentru
+ * fiecare cautare. Nu depinde de JMH:
+ *
+ * java -cp target/benchmarks.jar bot.bench.NodeCount [depth]
+ */
+
+public class NodeCount {
+
+	private static final String[] MODES = new String[] { "alphabeta", "pvs", "aspiration", "mtdf" };
+
+	public static void main(String[] args) {
+		int depth = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+
+		System.out.printf("%-12s", "position");
+		for (String mode : MODES) {
+			System.out.printf(" %12s", mode);
+		}
+		System.out.println();
+
+		long[] total = new long[MODES.length];
+		for (String name : Positions.NAMES) {
+			Field field = Positions.load(name);
+			int player = Positions.sideToMove(field);
+
+			System.out.printf("%-12s", name);
+			for (int mode = 0; mode < MODES.length; mode++) {
+				Search search = new Search(new TranspositionTable(16), 0);
+				search.setMode(mode);
+				search.runFixedDepth(field, player, player, depth);
+				total[mode] += search.getNodes();
+				System.out.printf(" %12d", search.getNodes());
+			}
+			System.out.println();
+		}
+
+		System.out.printf("%-12s", "total");
+		for (long nodes : total) {
+			System.out.printf(" %12d", nodes);
+		}
+		System.out.println();
+	}
+}
@@ -0,0 +1,65 @@
+package bot.bench;
+
+import bot.Field;
+
+/**
+ * Positions class
+ *
+ * Pozitiile pe care rulam benchmark-urile, in formatul din protocol (field si
+ * macroboard), luate din jocuri ale bot-ului cu el insusi: inceput de joc,
+ * mijloc de joc, mutari libere (trimis catre un patrat terminat) si final.
+ */
+
+public class Positions {
+
+	public static final String[] NAMES = new String[] { "start", "opening1", "opening2", "middlegame1",
+			"middlegame2", "freemove1", "freemove2", "endgame1", "endgame2" };
+
+	private static final String[][] DATA = new String[][] {
+			{ "0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0",
+					"-1,-1,-1,-1,-1,-1,-1,-1,-1" },
+			{ "0,0,0,0,1,0,0,0,0,0,0,0,0,2,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,2,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,1,0,0",
+					"0,0,0,0,-1,0,0,0,0" },
+			{ "2,0,0,0,0,0,0,0,0,0,0,0,0,1,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,1,0,0,0,0,0,0,0,0,0,2,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,2,0,0,0,0,0,0,0,0,0,0,0,0,1,2,0,0,0,1,0",
+					"-1,0,0,0,0,0,0,0,0" },
+			{ "0,0,0,0,1,0,0,0,2,0,0,0,0,2,0,0,0,0,0,0,0,0,0,0,0,0,1,0,0,1,0,0,0,0,0,0,0,0,2,0,1,0,2,0,0,0,0,0,2,0,0,0,1,0,0,2,0,0,0,0,2,0,0,1,0,0,0,0,1,0,0,0,0,0,0,0,2,0,1,0,0",
+					"-1,0,0,0,0,0,0,0,0" },
+			{ "2,1,0,2,2,0,0,0,0,0,1,0,0,0,0,0,0,2,0,0,0,0,1,0,1,0,0,0,0,1,0,0,0,0,0,2,0,0,0,0,0,0,1,0,0,2,0,0,0,2,1,0,0,0,1,2,0,0,1,0,0,0,0,0,0,0,2,2,0,0,0,1,1,2,0,0,1,0,2,0,0",
+					"0,-1,0,0,0,0,0,0,0" },
+			{ "2,0,0,1,1,1,2,0,2,0,2,1,2,0,0,2,0,1,1,1,2,0,0,0,0,1,0,0,2,0,0,2,1,1,0,0,0,0,0,0,0,1,0,0,2,1,1,1,0,0,0,0,2,2,2,0,1,2,0,2,1,2,0,2,0,0,1,2,0,0,1,0,2,0,0,1,0,0,0,2,1",
+					"2,1,-1,1,-1,-1,2,-1,1" },
+			{ "1,0,2,0,0,0,0,2,1,1,0,0,0,0,2,2,1,1,1,0,0,1,1,1,2,1,0,0,2,1,0,0,1,0,2,0,1,2,1,1,2,0,2,0,0,0,2,0,0,0,0,1,2,0,2,0,0,2,1,0,2,2,2,2,0,1,2,0,0,0,0,0,2,0,0,1,0,0,0,0,1",
+					"1,1,-1,2,-1,-1,2,-1,2" },
+			{ "1,1,0,2,1,2,2,1,1,1,0,1,0,2,2,0,0,0,0,2,2,0,2,2,2,0,0,2,1,1,0,0,0,2,0,0,2,0,2,0,1,0,2,0,1,0,0,0,2,0,0,1,0,1,1,2,2,0,1,0,0,1,0,0,0,0,1,0,0,1,0,2,2,1,1,1,2,1,1,2,0",
+					"0,2,0,0,0,0,0,0,-1" },
+			{ "2,1,0,0,1,2,0,2,0,2,1,0,2,0,2,0,1,2,0,1,0,0,1,1,1,2,0,1,1,1,2,0,0,1,2,0,0,0,0,2,1,0,1,0,0,0,2,0,2,0,0,0,0,0,0,0,1,0,2,2,2,0,1,0,2,0,0,1,1,0,0,0,0,2,0,0,2,1,0,1,2",
+					"1,0,0,1,2,0,0,-1,0" } };
+
+	/**
+	 * Citesc pozitia cu numele dat.
+	 */
+	public static Field load(String name) {
+		for (int i = 0; i < NAMES.length; i++) {
+			if (NAMES[i].equals(name)) {
+				Field field = new Field();
+				field.parseFromString(DATA[i][0]);
+				field.parseMacroboardFromString(DATA[i][1]);
+				return field;
+			}
+		}
+		throw new IllegalArgumentException("Unknown position " + name);
+	}
+
+	/**
+	 * Player-ul care muta: player 1 incepe, deci muta cand au acelasi numar
+	 * de celule.
+	 */
+	public static int sideToMove(Field field) {
+		int first = 0, second = 0;
+		for (int board = 0; board < 9; board++) {
+			first += Integer.bitCount(field.getBoardMask(1, board));
+			second += Integer.bitCount(field.getBoardMask(2, board));
+		}
+		return first == second ? 1 : 2;
+	}
+}
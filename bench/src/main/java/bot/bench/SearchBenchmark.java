@@ -0,0 +1,83 @@
+package bot.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import bot.Field;
+import bot.Search;
+import bot.TranspositionTable;
+
+/**
+ * SearchBenchmark class
+ *
+ * Minimax pana la o adancime fixa pe pozitiile din Positions. Tabela de
+ * transpozitii este golita inainte de fiecare cautare, ca fiecare invocare sa
+ * faca aceeasi munca. Contorul "nodes" apare in rezultate ca noduri pe
+ * secunda.
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+
+	// freemove2 lipseste: este castig intr-o mutare si cautarea se termina
+	// imediat
+	@Param({ "opening1", "opening2", "middlegame1", "middlegame2", "freemove1", "endgame1", "endgame2" })
+	public String position;
+
+	@Param({ "8" })
+	public int depth;
+
+	// Search.ALPHA_BETA, PVS, ASPIRATION sau MTDF
+	@Param({ "0", "1", "2", "3" })
+	public int mode;
+
+	private Field field;
+	private int player;
+	private TranspositionTable table;
+	private Search search;
+
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class Nodes {
+		public long nodes;
+	}
+
+	@Setup
+	public void setup() {
+		field = Positions.load(position);
+		player = Positions.sideToMove(field);
+		table = new TranspositionTable(16);
+		search = new Search(table, 0);
+		search.setMode(mode);
+	}
+
+	@Setup(Level.Invocation)
+	public void clearTable() {
+		table.clear();
+	}
+
+	@Benchmark
+	public int minimax(Nodes counter) {
+		search.runFixedDepth(field, player, player, depth);
+		counter.nodes += search.getNodes();
+		return search.getCompletedCell();
+	}
+}